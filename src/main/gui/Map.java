@@ -2,9 +2,28 @@ package main.gui;
 
 import main.gui.launcher.*;
 import main.instances.AStarInstance;
+import main.instances.AnytimeAStarInstance;
+import main.instances.BidirectionalAStarInstance;
+import main.instances.BidirectionalDijkstraInstance;
+import main.instances.BitParallelBfsInstance;
+import main.instances.BucketDijkstraInstance;
+import main.instances.ClusterAbstraction;
+import main.instances.ContractionHierarchy;
+import main.instances.ContractionHierarchyInstance;
+import main.instances.DeltaSteppingInstance;
 import main.instances.DijkstraInstance;
+import main.instances.FlowField;
+import main.instances.FlowFieldInstance;
+import main.instances.HeapDijkstraInstance;
+import main.instances.HierarchicalInstance;
+import main.instances.IterativeDeepeningAStarInstance;
+import main.instances.JumpPointSearchInstance;
 import main.instances.Heuristic;
 import main.instances.PathFinderInstance;
+import main.instances.SearchTrace;
+import main.instances.TraceFile;
+import main.instances.WeightedAStarInstance;
+import main.model.ConnectedComponents;
 import main.model.WeightedGraph;
 
 import javax.swing.JComponent;
@@ -16,7 +35,8 @@ import java.awt.BasicStroke;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Line2D;
 import java.awt.geom.Rectangle2D;
-import java.util.HashMap;
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -34,6 +54,7 @@ public class Map extends JComponent {
     private WeightedGraph.Vertex end;
     private int delay;
     private int timer;
+    private int samplePeriod;
     private Color pathColor;
     private Color currentVertexColor;
     private Color previousPathColor;
@@ -41,6 +62,7 @@ public class Map extends JComponent {
     private Color endVertexColor;
     private boolean showAnimation;
     private boolean verbose;
+    private TraceFile.Writer recorder;
     private final Configuration configuration;
 
     /**
@@ -79,30 +101,19 @@ public class Map extends JComponent {
         g2.setColor(Color.cyan);
         g2.fill(new Rectangle2D.Double(0,0,columns*pixelSize, lines*pixelSize));
 
-        int n = 0;
-        for (WeightedGraph.Vertex v : graph.getVertices()) {
-            String color = v.getType().color();
+        //colors are resolved once per type, not once per vertex
+        List<WeightedGraph.Type> types = graph.getTypes();
+        Color[] typeColors = null;
+        if(types != null) {
+            typeColors = new Color[types.size()];
+            for (int t = 0; t < typeColors.length; t++) typeColors[t] = decodeColor(types.get(t).color());
+        }
+
+        for (int n = 0; n < graph.size(); n++) {
             int y = n / columns;
             int x = n % columns;
 
-            //System.out.println(v.getN() + "/" + x + "/" + y + "/" + color);
-            switch(color){
-                case "green": g2.setPaint(Color.green); break;
-                case "gray": g2.setPaint(Color.gray); break;
-                case "blue": g2.setPaint(Color.blue); break;
-                case "yellow": g2.setPaint(Color.yellow); break;
-                case "magenta": g2.setPaint(Color.magenta); break;
-                case "red": g2.setPaint(Color.red); break;
-                case "pink": g2.setPaint(Color.pink); break;
-                case "white": g2.setPaint(Color.white); break;
-                default:
-                    try {
-                        g2.setPaint(Color.decode(color));
-                    } catch(NumberFormatException ne) {
-                        g2.setPaint(Color.black);
-                    }
-                    break;
-            }
+            g2.setPaint(typeColors != null ? typeColors[graph.getTypeId(n)] : new Color(graph.getColor(n)));
             g2.fill(new Rectangle2D.Double(x*pixelSize, y*pixelSize, pixelSize, pixelSize));
 
             if(n == start.getN()) {
@@ -115,51 +126,178 @@ public class Map extends JComponent {
                 g2.fill(new Rectangle2D.Double(x*pixelSize+((double)pixelSize/2)/2, y*pixelSize+((double)pixelSize/2)/2,
                         (double)pixelSize/2, (double)pixelSize/2));
             }
+        }
+    }
 
-            n++;
+    /**
+     * Decodes the color of a type of vertex.
+     *
+     * @param color the name of the color (e.g. "green") or its hexadecimal code (e.g. "#00ff00")
+     * @return the color, or black if it cannot be decoded
+     */
+    private static Color decodeColor(String color) {
+        switch(color){
+            case "green": return Color.green;
+            case "gray": return Color.gray;
+            case "blue": return Color.blue;
+            case "yellow": return Color.yellow;
+            case "magenta": return Color.magenta;
+            case "red": return Color.red;
+            case "pink": return Color.pink;
+            case "white": return Color.white;
+            default:
+                try {
+                    return Color.decode(color);
+                } catch(NumberFormatException ne) {
+                    return Color.black;
+                }
         }
     }
 
     /**
      * Updates the graphical representation of a vertex during pathfinding animation.
      *
-     * @param current the current vertex being processed
+     * @param n the current vertex being processed
+     * @param previous its previous vertex, or {@code -1} if it has none
      */
-    private void update(WeightedGraph.Vertex current) {
+    private void update(int n, int previous) {
         Graphics2D g2 = (Graphics2D) this.getGraphics();
-        int n = current.getN();
         int y = n / columns;
         int x = n % columns;
         g2.setPaint(currentVertexColor);
         double p = (double)pixelSize /2;
         g2.fill(new Ellipse2D.Double(x*pixelSize+p/2, y*pixelSize+p/2, p, p));
 
-        if (current.getTimeFromSource() < Double.POSITIVE_INFINITY) {
-            WeightedGraph.Vertex previous = current.getPrevious();
-            if (previous != null) {
-                int y2 = previous.getN() / columns;
-                int x2 = previous.getN() % columns;
-                g2.setPaint(previousPathColor);
-                g2.setStroke(new BasicStroke((float)pixelSize/10));
-                g2.draw(new Line2D.Double(x*this.pixelSize+p, y*this.pixelSize+p, x2*this.pixelSize+p,y2*this.pixelSize+p));
-            }
+        if (previous >= 0) {
+            int y2 = previous / columns;
+            int x2 = previous % columns;
+            g2.setPaint(previousPathColor);
+            g2.setStroke(new BasicStroke((float)pixelSize/10));
+            g2.draw(new Line2D.Double(x*this.pixelSize+p, y*this.pixelSize+p, x2*this.pixelSize+p,y2*this.pixelSize+p));
         }
         this.getToolkit().sync();
     }
 
     /**
      * Executes and displays the pathfinding algorithm specified in the launcher configuration.
+     * If the {@link Field.Type#RECORD} option is set, the search is written to its trace file while it runs.
      *
      * @param pathFinderType the type of pathfinding algorithm to execute (A*, Dijkstra, etc.)
+     * @throws IOException if an error occurs while reading or writing the contraction hierarchy, or writing the trace file
      * @see main.gui.launcher.Launcher.PathFinderArgument
      */
-    public void display(Launcher.PathFinderArgument pathFinderType) {
+    public void display(Launcher.PathFinderArgument pathFinderType) throws IOException {
+        WeightField wallField = (WeightField) configuration.get(Field.Type.WALL);
+        if(wallField != null) {
+            ConnectedComponents components = new ConnectedComponents(graph, wallField.getValue());
+            System.out.println(components.getCount() + " regions separated by walls (weight at least " + wallField.getValue() + ")");
+            if(!components.isConnected(start.getN(), end.getN())) {
+                System.out.println("Best path in : " + Double.POSITIVE_INFINITY + " (the start and end points are separated by walls)");
+                return;
+            }
+        }
+        FileField recordField = (FileField) configuration.get(Field.Type.RECORD);
+        try(TraceFile.Writer writer = recordField == null ? null : new TraceFile.Writer(recordField.getValue(), graph,
+                pathFinderType.getArg(), retrieveHeuristicArg(), start.getN(), end.getN())) {
+            this.recorder = writer;
+            search(pathFinderType);
+        } finally {
+            this.recorder = null;
+        }
+    }
+
+    /**
+     * Executes and displays the pathfinding algorithm specified.
+     *
+     * @param pathFinderType the type of pathfinding algorithm to execute
+     * @throws IOException if an error occurs while reading or writing the contraction hierarchy, or writing the trace file
+     */
+    private void search(Launcher.PathFinderArgument pathFinderType) throws IOException {
         switch(pathFinderType) {
-            case A_STAR -> showPathFinder(new AStarInstance(graph, columns, (Heuristic) configuration.get(Field.Type.HEURISTIC).getValue()));
+            case A_STAR -> showPathFinder(new AStarInstance(graph, columns, retrieveHeuristic()));
             case DIJKSTRA -> showPathFinder(new DijkstraInstance(graph));
+            case DIJKSTRA_HEAP -> showPathFinder(new HeapDijkstraInstance(graph));
+            case DIJKSTRA_AUTO -> showPathFinder(BitParallelBfsInstance.isSuitable(graph) ? new BitParallelBfsInstance(graph)
+                    : BucketDijkstraInstance.isSuitable(graph) ? new BucketDijkstraInstance(graph) : new HeapDijkstraInstance(graph));
+            case BIDIRECTIONAL_A_STAR -> showPathFinder(new BidirectionalAStarInstance(graph, columns, retrieveHeuristic()));
+            case BIDIRECTIONAL_DIJKSTRA -> showPathFinder(new BidirectionalDijkstraInstance(graph));
+            case JPS -> showPathFinder(new JumpPointSearchInstance(graph, columns, retrieveHeuristic()));
+            case CH -> showPathFinder(new ContractionHierarchyInstance(graph, retrieveHierarchy()));
+            case HPA -> showPathFinder(new HierarchicalInstance(graph, columns, retrieveHeuristic(),
+                    new ClusterAbstraction(graph, ClusterAbstraction.DEFAULT_CLUSTER_SIZE)));
+            case DELTA_STEPPING -> showPathFinder(new DeltaSteppingInstance(graph));
+            case WEIGHTED_A_STAR -> showPathFinder(new WeightedAStarInstance(graph, columns, retrieveHeuristic(), retrieveEpsilons()[0]));
+            case ARA_STAR -> {
+                AnytimeAStarInstance anytimeInstance = new AnytimeAStarInstance(graph, columns, retrieveHeuristic(), retrieveEpsilons(),
+                        (int) configuration.get(Field.Type.BUDGET).getValue());
+                showPathFinder(anytimeInstance);
+                for(AnytimeAStarInstance.Solution solution : anytimeInstance.getSolutions()) {
+                    System.out.println("epsilon " + solution.epsilon() + " : path in " + solution.cost()
+                            + " (at most " + solution.bound() + " times the best path) after " + solution.time() + "ms");
+                }
+            }
+            case IDA_STAR -> showPathFinder(new IterativeDeepeningAStarInstance(graph, columns, retrieveHeuristic()));
+            case FLOW_FIELD -> showFlowField(new FlowFieldInstance(graph));
         }
     }
 
+    /**
+     * Retrieves the heuristic of the {@link Field.Type#HEURISTIC} option, prepared for the graph (see {@link Heuristic#forGraph(WeightedGraph)}).
+     *
+     * @return the {@link Heuristic} to use on the graph
+     */
+    private Heuristic retrieveHeuristic() {
+        return ((Heuristic) configuration.get(Field.Type.HEURISTIC).getValue()).forGraph(graph);
+    }
+
+    /**
+     * Retrieves the name of the heuristic of the {@link Field.Type#HEURISTIC} option (see {@link Launcher.HeuristicArgument}).
+     *
+     * @return the name of the heuristic, or an empty {@link String} if the algorithm uses none
+     */
+    private String retrieveHeuristicArg() {
+        Field<?> heuristicField = configuration.get(Field.Type.HEURISTIC);
+        if(heuristicField == null) return "";
+        for(Launcher.HeuristicArgument argument : Launcher.HeuristicArgument.values()) {
+            if(argument.getHeuristic() == heuristicField.getValue()) return argument.getArg();
+        }
+        return "";
+    }
+
+    /**
+     * Retrieves the weights of the heuristic of the {@link Field.Type#EPSILON} option.
+     *
+     * @return the weights, one per search
+     */
+    private double[] retrieveEpsilons() {
+        return (double[]) configuration.get(Field.Type.EPSILON).getValue();
+    }
+
+    /**
+     * Retrieves the contraction hierarchy of the graph: it is read from the file of the {@link Field.Type#HIERARCHY} option
+     * if this file exists, built (and saved to this file, if the option is set) otherwise.
+     *
+     * @return the {@link ContractionHierarchy} of the graph
+     * @throws IOException if an error occurs while reading or writing the hierarchy file
+     */
+    private ContractionHierarchy retrieveHierarchy() throws IOException {
+        FileField hierarchyField = (FileField) configuration.get(Field.Type.HIERARCHY);
+        File file = hierarchyField == null ? null : hierarchyField.getValue();
+        if(file != null && file.exists()) {
+            System.out.println("reading the contraction hierarchy from '" + file + "'...");
+            return ContractionHierarchy.load(file, graph);
+        }
+
+        System.out.println("building the contraction hierarchy...");
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+        System.out.println("contraction hierarchy built: " + hierarchy.getShortcuts() + " shortcuts");
+        if(file != null) {
+            hierarchy.save(file);
+            System.out.println("contraction hierarchy saved to '" + file + "'");
+        }
+        return hierarchy;
+    }
+
     /**
      * Configures the visual properties of the map and pathfinding animation based on the settings
      * in the {@link Configuration}.
@@ -179,39 +317,40 @@ public class Map extends JComponent {
 
         this.delay = (int) configuration.get(Field.Type.DELAY).getValue();
         this.timer = (int) configuration.get(Field.Type.TIME).getValue();
+        this.samplePeriod = (int) configuration.get(Field.Type.SAMPLE).getValue();
 
         this.showAnimation = (boolean) configuration.get(Field.Type.SHOW_ANIMATION).getValue();
         this.verbose = (boolean) configuration.get(Field.Type.VERBOSE).getValue();
 
         PointField startField = (PointField) configuration.get(Field.Type.START);
-        if(startField != null) this.start = this.graph.getVertices().get(startField.getValue());
+        if(startField != null) this.start = this.graph.getVertex(startField.getValue());
         PointField endField = (PointField) configuration.get(Field.Type.END);
-        if(endField != null) this.end = this.graph.getVertices().get(endField.getValue());
+        if(endField != null) this.end = this.graph.getVertex(endField.getValue());
     }
 
     /**
      * Displays the result of the pathfinding algorithm and optionally animates the processing.
      *
      * @param pathFinderInstance the instance of the pathfinding algorithm
+     * @throws IOException if an error occurs while writing the trace file
      */
-    private void showPathFinder(PathFinderInstance pathFinderInstance) {
+    private void showPathFinder(PathFinderInstance pathFinderInstance) throws IOException {
         if(this.graph == null) return;
 
+        pathFinderInstance.setTracePeriod(showAnimation ? samplePeriod : 0); //no trace is kept without animation
+        pathFinderInstance.setTraceOutput(recorder);
         double pathTime = pathFinderInstance.searchPath(start, end, verbose);
-        HashMap<Integer, WeightedGraph.Vertex> delays = pathFinderInstance.getDelays();
+        SearchTrace trace = pathFinderInstance.getTrace();
         List<WeightedGraph.Vertex> path = pathFinderInstance.getPath();
+        saveRecord(pathTime, path);
 
-        int p = 0;
-        if(showAnimation) {
-            for (int i = 0; i < graph.getVertices().size(); i++) {
-                WeightedGraph.Vertex u = delays.get(i);
-                if (u != null) {
-                    Timer dispatch = new Timer(delay + i * timer, evt -> update(u));
-                    p++;
-                    dispatch.setRepeats(false);
-                    dispatch.start();
-                }
-            }
+        int p = trace.size();
+        for (int i = 0; i < p; i++) {
+            final int n = trace.getVertex(i);
+            final int previous = trace.getPrevious(i);
+            Timer dispatch = new Timer(delay + i * timer, evt -> update(n, previous));
+            dispatch.setRepeats(false);
+            dispatch.start();
         }
 
         Timer pathDispatch = new Timer(delay+p*timer, evt -> drawPath(path));
@@ -221,6 +360,100 @@ public class Map extends JComponent {
         System.out.println("Best path in : " + pathTime);
     }
 
+    /**
+     * Displays the distance field of the end vertex as a heatmap, then the path found by following its flow field.
+     *
+     * @param flowFieldInstance the instance of the flow field algorithm
+     * @throws IOException if an error occurs while writing the trace file
+     */
+    private void showFlowField(FlowFieldInstance flowFieldInstance) throws IOException {
+        if(this.graph == null) return;
+
+        flowFieldInstance.setTraceOutput(recorder);
+        double pathTime = flowFieldInstance.searchPath(start, end, verbose);
+        FlowField field = flowFieldInstance.getFlowField();
+        List<WeightedGraph.Vertex> path = flowFieldInstance.getPath();
+        saveRecord(pathTime, path);
+
+        Timer fieldDispatch = new Timer(delay, evt -> {
+            drawHeatmap(field);
+            drawPath(path);
+        });
+        fieldDispatch.setRepeats(false);
+        fieldDispatch.start();
+
+        System.out.println("Best path in : " + pathTime);
+    }
+
+    /**
+     * Finishes the trace file of the search, if the {@link Field.Type#RECORD} option is set.
+     *
+     * @param pathTime the cost of the path found
+     * @param path the path found
+     * @throws IOException if an error occurs while writing the trace file
+     */
+    private void saveRecord(double pathTime, List<WeightedGraph.Vertex> path) throws IOException {
+        if(recorder == null) return;
+        recorder.finish(pathTime, path);
+        System.out.println(recorder.getSteps() + " steps of the search saved to '"
+                + ((FileField) configuration.get(Field.Type.RECORD)).getValue() + "'");
+    }
+
+    /**
+     * Replays the search of a trace file (see {@link Launcher.MapArgument#REPLAY}): its steps are read from the file
+     * one by one while they are animated (one step out of the {@link Field.Type#SAMPLE} period), then its path is drawn.
+     * The file is closed once the path is drawn.
+     *
+     * @param trace the trace file, positioned before the first step of the search
+     */
+    public void replay(TraceFile.Reader trace) {
+        System.out.println("replaying " + trace.getAlgorithm() + (trace.getHeuristic().isEmpty() ? "" : " (" + trace.getHeuristic() + ")")
+                + ": " + trace.getSteps() + " steps");
+        List<WeightedGraph.Vertex> path = trace.getPath();
+        Timer replayDispatch = new Timer(timer, null);
+        replayDispatch.setInitialDelay(delay);
+        replayDispatch.addActionListener(evt -> {
+            try {
+                if(showAnimation && trace.nextStep()) {
+                    update(trace.getVertex(), trace.getPrevious());
+                    for(int skipped = 1; skipped < samplePeriod && trace.nextStep(); skipped++);
+                    return;
+                }
+                replayDispatch.stop();
+                drawPath(path);
+                trace.close();
+            } catch(IOException | IllegalArgumentException e) {
+                replayDispatch.stop();
+                System.err.println(e.getMessage());
+            }
+        });
+        replayDispatch.start();
+
+        System.out.println("Best path in : " + trace.getCost());
+    }
+
+    /**
+     * Draws the distances of a distance field over the map, from the path color (near the goal)
+     * to the current vertex color (farthest). Unreachable vertices are left as they are.
+     *
+     * @param field the distance field
+     */
+    private void drawHeatmap(FlowField field) {
+        Graphics2D g2 = (Graphics2D)this.getGraphics();
+        float max = Math.max(field.getMaxDistance(), Float.MIN_NORMAL);
+        for(int n = 0; n < graph.size(); n++) {
+            float distance = field.getDistance(n);
+            if(distance == Float.POSITIVE_INFINITY) continue;
+            float ratio = distance / max;
+            int red = Math.round(pathColor.getRed() + ratio * (currentVertexColor.getRed() - pathColor.getRed()));
+            int green = Math.round(pathColor.getGreen() + ratio * (currentVertexColor.getGreen() - pathColor.getGreen()));
+            int blue = Math.round(pathColor.getBlue() + ratio * (currentVertexColor.getBlue() - pathColor.getBlue()));
+            g2.setPaint(new Color(red, green, blue, 128));
+            g2.fill(new Rectangle2D.Double((n % columns)*pixelSize, (n / columns)*pixelSize, pixelSize, pixelSize));
+        }
+        this.getToolkit().sync();
+    }
+
     /**
      * Draws the shortest path determined by the pathfinding algorithm.
      *
@@ -5,6 +5,7 @@ import main.model.WeightedGraph;
 import main.reader.GraphFileReader;
 import main.reader.GraphImageReader;
 import main.reader.GraphReader;
+import main.reader.GraphTraceReader;
 
 import javax.swing.*;
 import java.awt.*;
@@ -17,6 +18,7 @@ import java.awt.*;
 public class Window {
     private int width, height, pixelSize;
     private final Launcher launcher;
+    private GraphTraceReader traceReader;
 
     /**
      * Constructs a new {@link Window} instance and initializes it with the provided arguments.
@@ -30,19 +32,20 @@ public class Window {
 
     /**
      * Displays the main application window, processes the map data, and applies the selected
-     * pathfinding algorithm.
+     * pathfinding algorithm (or replays the search of the trace file, see {@link Launcher.MapArgument#REPLAY}).
      *
      * @throws Exception if an error occurs while retrieving or processing the map data
      */
     public void show() throws Exception {
         Map map = retrieveMap();
         System.out.println("init. map window (" + width + "x" + height + ") of type " + launcher.getMapType() + " for file '"
-                + launcher.getPath() + "'" + " | " + launcher.getPathFinderType());
+                + launcher.getPath() + "'" + " | " + (traceReader != null ? traceReader.retrieveTrace().getAlgorithm() : launcher.getPathFinderType()));
 
         initWindow(map);
         map.repaint();
 
-        map.display(launcher.getPathFinderType());
+        if(traceReader != null) map.replay(traceReader.retrieveTrace());
+        else map.display(launcher.getPathFinderType());
     }
 
     /**
@@ -58,6 +61,7 @@ public class Window {
         GraphReader graphReader = switch(launcher.getMapType()) {
             case IMAGE -> new GraphImageReader(path);
             case CONFIG -> new GraphFileReader(path);
+            case REPLAY -> this.traceReader = new GraphTraceReader(path);
         };
 
         graphReader.read();
@@ -12,6 +12,8 @@ import java.util.Map;
 public class Configuration {
     private static final TimeField DEFAULT_DELAY = new TimeField(2000, 0, 10_000); //ms
     private static final TimeField DEFAULT_TIMER = new TimeField(10, 1, 20_000); //ms
+    private static final TimeField DEFAULT_BUDGET = new TimeField(5, 1, 60_000); //ms
+    private static final PeriodField DEFAULT_SAMPLE = new PeriodField(1);
     private static final ColorField DEFAULT_PATH_COLOR = new ColorField("#FF19A7");
     private static final ColorField DEFAULT_CURRENT_VERTEX_COLOR = new ColorField("#8E09DB");
     private static final ColorField DEFAULT_PREVIOUS_PATH_COLOR = new ColorField("#FF9C19");
@@ -61,6 +63,8 @@ public class Configuration {
         final Map<Field.Type, Field<?>> defaultConfig = new HashMap<>();
         defaultConfig.put(Field.Type.DELAY, DEFAULT_DELAY);
         defaultConfig.put(Field.Type.TIME, DEFAULT_TIMER);
+        defaultConfig.put(Field.Type.BUDGET, DEFAULT_BUDGET);
+        defaultConfig.put(Field.Type.SAMPLE, DEFAULT_SAMPLE);
         defaultConfig.put(Field.Type.PATH_COLOR, DEFAULT_PATH_COLOR);
         defaultConfig.put(Field.Type.CURRENT_VERTEX_COLOR, DEFAULT_CURRENT_VERTEX_COLOR);
         defaultConfig.put(Field.Type.PREVIOUS_PATH_COLOR, DEFAULT_PREVIOUS_PATH_COLOR);
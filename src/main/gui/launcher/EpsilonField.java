@@ -0,0 +1,78 @@
+package main.gui.launcher;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * A {@link Field} representing the weights of the heuristic of weighted A* (a single weight)
+ * or of ARA* (a schedule of weights, one per search).
+ * The weights must be at least 1, and decreasing.
+ */
+public class EpsilonField extends Field<double[]> {
+    private final Launcher.PathFinderArgument pathFinder;
+
+    /**
+     * Constructs an {@link EpsilonField} with the specified pathfinder algorithm and weights.
+     *
+     * @param pathFinder the pathfinder algorithm using these weights
+     * @param value      the weights
+     */
+    public EpsilonField(Launcher.PathFinderArgument pathFinder, double[] value) {
+        super(value);
+        this.pathFinder = pathFinder;
+    }
+
+    /**
+     * Constructs an {@link EpsilonField} by parsing the specified {@link String} value.
+     *
+     * @param pathFinder the pathfinder algorithm using these weights
+     * @param value      the weights, separated by commas (e.g. {@code 2.5,1.5,1})
+     */
+    public EpsilonField(Launcher.PathFinderArgument pathFinder, String value) {
+        this(pathFinder, Arrays.stream(value.split(",")).mapToDouble(Double::parseDouble).toArray());
+    }
+
+    /**
+     * Constructs an {@link EpsilonField} and automatically selects the weights based on the pathfinder algorithm.
+     *
+     * @param pathFinder the pathfinder algorithm using these weights
+     */
+    public EpsilonField(Launcher.PathFinderArgument pathFinder) { //auto choose weights based on the pathfinder
+        this(pathFinder, auto(pathFinder));
+    }
+
+    /**
+     * Automatically selects the weights based on the pathfinder algorithm.
+     *
+     * @param pathFinder the pathfinder algorithm
+     * @return the default weights for the given pathfinder algorithm
+     */
+    private static double[] auto(Launcher.PathFinderArgument pathFinder) {
+        return pathFinder == Launcher.PathFinderArgument.ARA_STAR ? new double[]{2.5, 2, 1.5, 1} : new double[]{1.5};
+    }
+
+    /**
+     * Validates the weights.
+     *
+     * @return {@code true} if the weights are at least 1 and decreasing (and there is a single weight for weighted A*),
+     * {@code false} otherwise
+     */
+    @Override
+    public boolean isValueValid() {
+        if(value.length == 0 || (pathFinder != Launcher.PathFinderArgument.ARA_STAR && value.length > 1)) return false;
+        for(int k = 0; k < value.length; k++) {
+            if(!(value[k] >= 1.0) || (k > 0 && value[k] > value[k - 1])) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the weights, separated by commas.
+     *
+     * @return a {@link String} representing the weights
+     */
+    @Override
+    public String toString() {
+        return Arrays.stream(value).mapToObj(Double::toString).collect(Collectors.joining(","));
+    }
+}
@@ -5,6 +5,7 @@ import java.util.stream.Collectors;
 
 import static main.gui.launcher.Launcher.ALL_MAP_TYPES;
 import static main.gui.launcher.Launcher.ALL_PATH_FINDERS;
+import static main.gui.launcher.Launcher.SEARCH_MAP_TYPES;
 
 /**
  * Represents a generic field used for configuration (see {@link Configuration}) in the application.
@@ -22,9 +23,16 @@ public abstract class Field<T> {
     public enum Type {
         START("--start", Launcher.MapArgument.IMAGE),
         END("--end", Launcher.MapArgument.IMAGE),
-        HEURISTIC("--heuristic", ALL_MAP_TYPES, Launcher.PathFinderArgument.A_STAR),
+        HEURISTIC("--heuristic", SEARCH_MAP_TYPES, Launcher.PathFinderArgument.A_STAR, Launcher.PathFinderArgument.BIDIRECTIONAL_A_STAR, Launcher.PathFinderArgument.JPS, Launcher.PathFinderArgument.HPA,
+                Launcher.PathFinderArgument.WEIGHTED_A_STAR, Launcher.PathFinderArgument.ARA_STAR, Launcher.PathFinderArgument.IDA_STAR),
+        HIERARCHY("--hierarchy", SEARCH_MAP_TYPES, Launcher.PathFinderArgument.CH),
+        WALL("--wall", SEARCH_MAP_TYPES),
+        EPSILON("--epsilon", SEARCH_MAP_TYPES, Launcher.PathFinderArgument.WEIGHTED_A_STAR, Launcher.PathFinderArgument.ARA_STAR),
+        BUDGET("--budget", SEARCH_MAP_TYPES, Launcher.PathFinderArgument.ARA_STAR),
+        RECORD("--record", SEARCH_MAP_TYPES),
         TIME("--time", ALL_MAP_TYPES),
         DELAY("--delay", ALL_MAP_TYPES),
+        SAMPLE("--sample", ALL_MAP_TYPES),
         START_VERTEX_COLOR("--start-color", ALL_MAP_TYPES),
         END_VERTEX_COLOR("--end-color", ALL_MAP_TYPES),
         PREVIOUS_PATH_COLOR("--previous-color", ALL_MAP_TYPES),
@@ -67,7 +75,7 @@ public abstract class Field<T> {
          *
          * @param arg        the command-line argument to resolve
          * @param type       the map type
-         * @param pathFinder the pathfinder algorithm
+         * @param pathFinder the pathfinder algorithm, or {@code null} if there is none (see {@link Launcher.MapArgument#REPLAY})
          * @return the matching {@link Type}
          * @throws IllegalArgumentException if the argument is invalid for the given map type or pathfinder algorithm
          */
@@ -80,7 +88,7 @@ public abstract class Field<T> {
                                         + "\nthis option is valid for: " +
                                         option.getTypes().stream().map(Launcher.MapArgument::getArg).collect(Collectors.joining(",")
                                         ));
-                    if(!option.getPathFinders().contains(pathFinder))
+                    if(pathFinder != null && !option.getPathFinders().contains(pathFinder))
                         throw new IllegalArgumentException(
                                 "invalid option '" + arg + "' for pathfinder algorithm argument '" + pathFinder + "'"
                                         + "\nthis options is valid for: " +
@@ -0,0 +1,31 @@
+package main.gui.launcher;
+
+import java.io.File;
+
+/**
+ * A {@code Field} representing a file to read from, or to write to if it does not exist yet.
+ * The value must not be a directory, and the directory of the file must exist.
+ */
+public class FileField extends Field<File> {
+
+    /**
+     * Constructs a {@link FileField} with the specified {@link String} value.
+     *
+     * @param value the path to the file
+     */
+    public FileField(String value) {
+        super(new File(value));
+    }
+
+    /**
+     * Validates the file value.
+     *
+     * @return {@code true} if the file exists or can be created in an existing directory, {@code false} otherwise
+     */
+    @Override
+    public boolean isValueValid() {
+        if(value.exists()) return value.isFile();
+        File parent = value.getAbsoluteFile().getParentFile();
+        return parent != null && parent.isDirectory();
+    }
+}
@@ -34,11 +34,13 @@ public class HeuristicField extends Field<Heuristic> {
      *
      * @param mapType the map type
      * @return the appropriate heuristic for the given map type (it's a default value)
+     * @throws IllegalArgumentException if no search is run on this map type
      */
     private static Heuristic auto(Launcher.MapArgument mapType) {
         return switch(mapType) {
             case IMAGE -> Heuristic.MANHATTAN;
             case CONFIG -> Heuristic.CHEBYSHEV;
+            case REPLAY -> throw new IllegalArgumentException("no heuristic for map type argument '" + mapType.getArg() + "'");
         };
     }
 
@@ -50,8 +52,9 @@ public class HeuristicField extends Field<Heuristic> {
     @Override
     public boolean isValueValid() {
         return switch(mapType) {
-            case IMAGE -> value == Heuristic.MANHATTAN;
-            case CONFIG -> value == Heuristic.CHEBYSHEV || value == Heuristic.EUCLIDEAN || value == Heuristic.OCTILE;
+            case IMAGE -> value == Heuristic.MANHATTAN || value == Heuristic.ALT;
+            case CONFIG -> value == Heuristic.CHEBYSHEV || value == Heuristic.EUCLIDEAN || value == Heuristic.OCTILE || value == Heuristic.ALT;
+            case REPLAY -> false; //a replay runs no search
         };
     }
 }
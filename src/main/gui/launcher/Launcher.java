@@ -15,6 +15,7 @@ import main.instances.Heuristic;
  */
 public class Launcher {
     public static final MapArgument[] ALL_MAP_TYPES = MapArgument.values();
+    public static final MapArgument[] SEARCH_MAP_TYPES = {MapArgument.IMAGE, MapArgument.CONFIG};
     public static final PathFinderArgument[] ALL_PATH_FINDERS = PathFinderArgument.values();
     private static final String HELP_MESSAGE = String.format(
             """
@@ -26,16 +27,30 @@ public class Launcher {
             ====
             
             Usage: java -jar dijkstra-a_star-mapper.jar <map_type> <path_finder_algorithm> <path> [options]
+                   java -jar dijkstra-a_star-mapper.jar replay <path> [options]
             
             where:
             
             <map_type> includes
             image               to set the program to image mode (<path> will then be the path to the image file)
             config              to set the program to config mode (<path> will then be the path to the map configuration file)
+            replay              to replay a search recorded with --record, without reading its map or running it again (<path> will then be the path to the trace file, and there is no <path_finder_algorithm>)
             
             <path_finder_algorithm> includes
             dijkstra            use Dijkstra's algorithm on this map
+            dijkstra-heap       use Dijkstra's algorithm with a binary heap on this map (faster on large maps)
+            dijkstra-auto       use the fastest Dijkstra's algorithm for this map: a breadth-first search on 64 vertices at once if the map has only two weights (such as floor and walls), a bucket queue if the weights are small enough, a binary heap otherwise (same cost as dijkstra)
             a-star              use A* algorithm on this map
+            bidirectional-dijkstra  use Dijkstra's algorithm from both the start and the end points on this map
+            bidirectional-a-star    use A* algorithm from both the start and the end points on this map
+            jps                 use Jump Point Search (A* jumping over uniform regions) on this map
+            ch                  use a contraction hierarchy of this map (built once, then fast queries; see --hierarchy)
+            hpa                 use hierarchical A* (HPA*) on clusters of this map (faster on large maps, but the path found may be slightly longer)
+            delta-stepping      use the delta-stepping algorithm on this map, relaxing edges on all available cores (same cost as dijkstra)
+            weighted-a-star     use weighted A* on this map: the heuristic is multiplied by epsilon, which is faster but finds a path at most epsilon times longer than the shortest path (see --epsilon)
+            ara-star            use anytime A* (ARA*) on this map: a first path is found with a large epsilon, then improved with smaller ones while time remains (see --epsilon and --budget)
+            ida-star            use iterative deepening A* (IDA*) on this map: depth-first searches with an increasing f-score bound and a bounded cache, using very little memory on huge maps (but slow on maps with many different weights)
+            flow-field          use a flow field towards the end point (one search from the end, then a walk from any point; the distances are shown as a heatmap)
             
             <path> is the path to the map source file, according to the mode (see <map_type>)
             
@@ -48,6 +63,8 @@ public class Launcher {
             
             --delay             <time>      set the delay before the display begins (<time> minimum value: 0, maximum value: 60000) | default: 2000ms
             
+            --sample            <period>    animate one vertex selected by the search out of <period> (<period> minimum value: 1, maximum value: 1000000) | default: 1
+            
             --start-color       <color>     set the starting point vertex color to <color>, where <color> is a hexadecimal color code | default: #FF194F
             
             --end-color         <color>     set the finish point vertex color to <color>, where <color> is a hexadecimal color code | default: #19A3FF
@@ -58,7 +75,17 @@ public class Launcher {
             
             --path-color        <color>     set the (final, shortest) path color to <color>, where <color> is a hexadecimal color code | default: #FF19A7
             
-            --heuristic       <heuristic>   define the heuristic (can only be used if <path_finder_algorithm>=a-star), where <heuristic> includes [chebyshev, octile, euclidean] for <map_type>=config and [manhattan] for <map_type>=image | default: chebyshev if <map_type>=config ; manhattan if <map_type>=image
+            --heuristic       <heuristic>   define the heuristic (can only be used if <path_finder_algorithm>=a-star, bidirectional-a-star, jps, hpa, weighted-a-star, ara-star or ida-star), where <heuristic> includes [chebyshev, octile, euclidean, alt] for <map_type>=config and [manhattan, alt] for <map_type>=image (alt uses landmarks and the weights of the map) | default: chebyshev if <map_type>=config ; manhattan if <map_type>=image
+            
+            --wall              <weight>    consider the vertices whose weight is at least <weight> as walls: if the start and end points are separated by walls, no search is run (cannot be used if <map_type>=replay, <weight> minimum value: 1, maximum value: 32767) | default: no wall
+            
+            --hierarchy         <file>      read the contraction hierarchy of the map from <file> if it exists, or build it and save it to <file> otherwise (can only be used if <path_finder_algorithm>=ch) | default: built and not saved
+            
+            --epsilon         <epsilons>    set the weight of the heuristic (can only be used if <path_finder_algorithm>=weighted-a-star or ara-star), where <epsilons> is a number at least 1 for weighted-a-star, and decreasing numbers at least 1 separated by commas (one per search) for ara-star | default: 1.5 for weighted-a-star ; 2.5,2,1.5,1 for ara-star
+            
+            --budget            <time>      set the time after which ara-star stops improving its path (can only be used if <path_finder_algorithm>=ara-star, <time> minimum value: 1, maximum value: 60000) | default: 5ms
+            
+            --record            <file>      write every vertex selected by the search to the trace file <file> while it runs, with the map and the path found, to replay it later (see <map_type>=replay; cannot be used if <map_type>=replay) | default: no trace file
             
             
             --verbose                       log each step of the path finder algorithm and print the graph
@@ -71,7 +98,8 @@ public class Launcher {
      */
     public enum MapArgument {
         IMAGE("image"),
-        CONFIG("config");
+        CONFIG("config"),
+        REPLAY("replay");
 
         private final String arg;
         /**
@@ -113,7 +141,19 @@ public class Launcher {
      */
     public enum PathFinderArgument {
         DIJKSTRA("dijkstra"),
-        A_STAR("a-star");
+        DIJKSTRA_HEAP("dijkstra-heap"),
+        DIJKSTRA_AUTO("dijkstra-auto"),
+        A_STAR("a-star"),
+        BIDIRECTIONAL_DIJKSTRA("bidirectional-dijkstra"),
+        BIDIRECTIONAL_A_STAR("bidirectional-a-star"),
+        JPS("jps"),
+        CH("ch"),
+        HPA("hpa"),
+        DELTA_STEPPING("delta-stepping"),
+        WEIGHTED_A_STAR("weighted-a-star"),
+        ARA_STAR("ara-star"),
+        IDA_STAR("ida-star"),
+        FLOW_FIELD("flow-field");
 
         private final String arg;
         /**
@@ -157,7 +197,8 @@ public class Launcher {
         EUCLIDEAN("euclidean", Heuristic.EUCLIDEAN),
         MANHATTAN("manhattan", Heuristic.MANHATTAN),
         CHEBYSHEV("chebyshev", Heuristic.CHEBYSHEV),
-        OCTILE("octile", Heuristic.OCTILE);
+        OCTILE("octile", Heuristic.OCTILE),
+        ALT("alt", Heuristic.ALT);
 
         private final String arg;
         private final Heuristic heuristic;
@@ -230,12 +271,20 @@ public class Launcher {
         int i = 2;
         try {
             this.mapType = MapArgument.of(args[0]);
-            this.pathFinderType = PathFinderArgument.of(args[1]);
-            this.path = args[2];
             this.configuration = new Configuration();
-            if(pathFinderType == PathFinderArgument.A_STAR) {
-                configuration.set(Field.Type.HEURISTIC, new HeuristicField(mapType));
-            } //by default, auto
+            if(mapType == MapArgument.REPLAY) { //the path finder algorithm is read from the trace file
+                i = 1;
+                this.path = args[1];
+            } else {
+                this.pathFinderType = PathFinderArgument.of(args[1]);
+                this.path = args[2];
+                if(Field.Type.HEURISTIC.getPathFinders().contains(pathFinderType)) {
+                    configuration.set(Field.Type.HEURISTIC, new HeuristicField(mapType));
+                } //by default, auto
+                if(Field.Type.EPSILON.getPathFinders().contains(pathFinderType)) {
+                    configuration.set(Field.Type.EPSILON, new EpsilonField(pathFinderType));
+                } //by default, auto
+            }
 
             while(i+1 < l) {
                 Field.Type type = Field.Type.of(args[++i], mapType, pathFinderType);
@@ -243,8 +292,13 @@ public class Launcher {
                 Field<?> field = switch(type) {
                     case START, END -> new PointField(args[++i]);
                     case HEURISTIC -> new HeuristicField(mapType, HeuristicArgument.retrieveHeuristic(args[++i]));
+                    case HIERARCHY, RECORD -> new FileField(args[++i]);
+                    case WALL -> new WeightField(args[++i]);
+                    case EPSILON -> new EpsilonField(pathFinderType, args[++i]);
+                    case BUDGET -> new TimeField(args[++i], 1, 60_000);
                     case TIME -> new TimeField(args[++i], 1, 20_000);
                     case DELAY -> new TimeField(args[++i], 0, 60_000);
+                    case SAMPLE -> new PeriodField(args[++i]);
                     case START_VERTEX_COLOR,
                          END_VERTEX_COLOR,
                          PREVIOUS_PATH_COLOR,
@@ -254,7 +308,7 @@ public class Launcher {
                     case VERBOSE -> new BooleanValueField(true);
                 };
                 if(field.isValueValid()) configuration.set(type, field);
-                else throw new IllegalArgumentException("value '" + field.getValue() + "' is invalid for option '" + type + "'");
+                else throw new IllegalArgumentException("value '" + field + "' is invalid for option '" + type + "'");
             }
         } catch(ArrayIndexOutOfBoundsException ai) {
             String message = args.length < 3 ? "invalid command" : "missing argument after " + args[i-1];
@@ -285,7 +339,8 @@ public class Launcher {
     /**
      * Retrieves the pathfinding algorithm specified in the command-line arguments.
      *
-     * @return the {@link PathFinderArgument} representing the pathfinding algorithm
+     * @return the {@link PathFinderArgument} representing the pathfinding algorithm,
+     * or {@code null} for {@link MapArgument#REPLAY} (the algorithm is then read from the trace file)
      */
     public PathFinderArgument getPathFinderType() {
         return pathFinderType;
@@ -0,0 +1,36 @@
+package main.gui.launcher;
+
+/**
+ * A {@code Field} representing a sampling period: one step out of {@code value} is kept.
+ * The value must be positive.
+ */
+public class PeriodField extends Field<Integer> {
+
+    /**
+     * Constructs a {@link PeriodField} with the specified value.
+     *
+     * @param value the period
+     */
+    public PeriodField(int value) {
+        super(value);
+    }
+
+    /**
+     * Constructs a {@link PeriodField} by parsing the specified {@link String} value.
+     *
+     * @param value the {@link String} representation of the period (an integer)
+     */
+    public PeriodField(String value) {
+        this(Integer.parseInt(value));
+    }
+
+    /**
+     * Validates the period.
+     *
+     * @return {@code true} if the period is within the range [1, 1000000], {@code false} otherwise
+     */
+    @Override
+    public boolean isValueValid() {
+        return value >= 1 && value <= 1_000_000;
+    }
+}
@@ -0,0 +1,36 @@
+package main.gui.launcher;
+
+/**
+ * A {@code Field} representing the weight of a vertex.
+ * The value must be positive, and at most the largest weight of a vertex.
+ */
+public class WeightField extends Field<Integer> {
+
+    /**
+     * Constructs a {@link WeightField} with the specified value.
+     *
+     * @param value the weight
+     */
+    public WeightField(int value) {
+        super(value);
+    }
+
+    /**
+     * Constructs a {@link WeightField} by parsing the specified {@link String} value.
+     *
+     * @param value the {@link String} representation of the weight (an integer)
+     */
+    public WeightField(String value) {
+        this(Integer.parseInt(value));
+    }
+
+    /**
+     * Validates the weight.
+     *
+     * @return {@code true} if the weight is within the range [1, {@link Short#MAX_VALUE}], {@code false} otherwise
+     */
+    @Override
+    public boolean isValueValid() {
+        return value >= 1 && value <= Short.MAX_VALUE;
+    }
+}
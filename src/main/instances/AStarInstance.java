@@ -2,14 +2,23 @@ package main.instances;
 
 import main.model.WeightedGraph;
 
-import java.util.*;
 
 /**
  * An implementation of the A* algorithm for finding the shortest path in a weighted graph.
+ * <p>
+ * The open set is an indexed binary heap ordered by f-score (see {@link IndexedMinHeap}), and the closed set,
+ * the time from source (g-score) and the f-score of each vertex are kept in the {@link SearchContext} of the search,
+ * so the cost of a search only depends on the number of vertices it reaches, not on the size of the map.
+ * <p>
+ * On huge maps, a query between close vertices runs in a {@link SparseSearchContext}, so it does not allocate
+ * (nor keep) arrays as large as the map for the few vertices it reaches.
  */
 public class AStarInstance extends PathFinderInstance {
     private final int mapSize;
     private final Heuristic heuristic;
+    private final double epsilon;
+    private static final int SPARSE_MIN_SIZE = 1 << 22; //vertices
+    private static final int SPARSE_RATIO = 16;
 
     /**
      * Constructs an {@link AStarInstance} for the specified graph, map size, and heuristic.
@@ -19,89 +28,95 @@ public class AStarInstance extends PathFinderInstance {
      * @param heuristic the heuristic function for A*
      */
     public AStarInstance(WeightedGraph graph, int mapSize, Heuristic heuristic) {
+        this(graph, mapSize, heuristic, 1.0);
+    }
+
+    /**
+     * Constructs an {@link AStarInstance} whose heuristic is multiplied by a weight (see {@link WeightedAStarInstance}).
+     *
+     * @param graph the {@link WeightedGraph} to operate on
+     * @param mapSize the size of the map (used for heuristic calculations)
+     * @param heuristic the heuristic function for A*
+     * @param epsilon the weight of the heuristic (at least 1)
+     */
+    protected AStarInstance(WeightedGraph graph, int mapSize, Heuristic heuristic, double epsilon) {
         super(graph);
         this.mapSize = mapSize;
         this.heuristic = heuristic;
+        this.epsilon = epsilon;
+    }
+
+    /**
+     * Decides whether a search should run in a sparse context: the map must be huge, and the square around both
+     * vertices (a rough estimate of the number of vertices reached) must be much smaller than the map.
+     *
+     * @param start the starting vertex
+     * @param end the ending vertex
+     * @return whether the search from {@code start} to {@code end} should use a {@link SparseSearchContext}
+     */
+    private boolean isSparse(int start, int end) {
+        if(graph.size() < SPARSE_MIN_SIZE) return false;
+        int columns = graph.getColumns();
+        int dl = Math.abs(start / columns - end / columns);
+        int dc = Math.abs(start % columns - end % columns);
+        long moves = (graph.isDiagonal() ? Math.max(dl, dc) : dl + dc) + 1L;
+        return moves * moves * SPARSE_RATIO < graph.size();
     }
 
     /**
      * Performs the A* algorithm to find the shortest path between the start and end vertices.
+     * The search stops when the end vertex is selected (i.e. closed), or when the open set is empty.
+     * A closed vertex whose time from source is improved later (which can only happen if the heuristic is not consistent)
+     * is opened again.
      *
      * @param start the starting vertex
      * @param end the ending vertex
      * @param verbose whether logs should be output
-     * @return the total cost of the shortest path
+     * @return the total cost of the shortest path, or {@link Double#POSITIVE_INFINITY} if the end vertex is unreachable
      */
     @Override
     public double searchPath(WeightedGraph.Vertex start, WeightedGraph.Vertex end, boolean verbose) {
-        delays.clear();
-        path.clear();
+        SearchContext context = isSparse(start.getN(), end.getN()) ? newSparseSearch() : newSearch();
+        SearchTrace trace = context.getTrace();
+        IndexedMinHeap open = context.getQueue();
 
         final int ex = end.getN() % mapSize;
         final int ey = end.getN() / mapSize;
-        List<WeightedGraph.Vertex> open = new ArrayList<>();
-        open.add(start);
-
-        HashMap<WeightedGraph.Vertex, Double> f = new HashMap<>();
-        for(WeightedGraph.Vertex v : graph.getVertices()) {
-            f.put(v, Double.POSITIVE_INFINITY);
-            v.setTimeFromSource(Double.POSITIVE_INFINITY);
-        }
-        start.setTimeFromSource(0.0);
-        f.replace(start, heuristic.h(start.getN()%mapSize, start.getN()/mapSize, ex, ey));
-
-        int i = 0;
-        while(!open.contains(end)) {
-            WeightedGraph.Vertex u = findMinF(open, f);
-            if(verbose) System.out.println("selecting the vertex with the minimum f-score: " + u);
-
-            WeightedGraph.Vertex temp = new WeightedGraph.Vertex(u.getN(), u.getType());
-            temp.setPrevious(u.getPrevious()); //keeping the previous vertex at time i with shallow copy
-            delays.put(i, temp);
-
-            open.remove(u);
-            for(WeightedGraph.Vertex neighbor : u.getNeighbors()) {
-                int nx = neighbor.getN() % mapSize;
-                int ny = neighbor.getN() / mapSize;
-                double dist = heuristic.h(nx,ny,ex,ey);
-                double factor = u.getDiagonalNeighbors().contains(neighbor) ? Math.sqrt(2) : 2.0;
-                double weight = (double)(neighbor.getType().value() + u.getType().value())/factor;
-
-                double tentative = u.getTimeFromSource() + weight;
-                if(tentative < neighbor.getTimeFromSource()) {
-                    neighbor.setPrevious(u);
-                    neighbor.setTimeFromSource(tentative);
-                    if(verbose) System.out.println("update neighbor " + neighbor.getN() + " f-score: " + tentative+dist);
-                    f.replace(neighbor, tentative+dist);
-                    if(!open.contains(neighbor)) open.add(neighbor);
+        context.setTimeFromSource(start.getN(), 0.0);
+        context.setF(start.getN(), epsilon*heuristic.h(start.getN()%mapSize, start.getN()/mapSize, ex, ey));
+        open.push(start.getN(), context.getF(start.getN()));
+
+        while(!open.isEmpty() && !context.isOverBudget()) {
+            int u = open.poll();
+            trace.record(u, context.getPrevious(u));
+            if(verbose) System.out.println("selecting the vertex with the minimum f-score: " + snapshot(u, context));
+            context.close(u);
+            if(u == end.getN()) break;
+
+            double currentTime = context.getTimeFromSource(u);
+            for(int d = 0; d < graph.getDirections(); d++) {
+                int neighbor = graph.getNeighbor(u, d);
+                if(neighbor < 0) continue;
+                double weight = graph.getCost(u, neighbor, d);
+
+                double tentative = currentTime + weight;
+                if(tentative < context.getTimeFromSource(neighbor)) {
+                    double dist = epsilon*heuristic.h(neighbor % mapSize, neighbor / mapSize, ex, ey);
+                    context.setPrevious(neighbor, u);
+                    context.setTimeFromSource(neighbor, tentative);
+                    if(verbose) System.out.println("update neighbor " + neighbor + " f-score: " + (tentative+dist));
+                    context.setF(neighbor, tentative+dist);
+                    context.open(neighbor);
+                    open.push(neighbor, tentative+dist);
                 }
             }
-            i++;
         }
 
-        retrievePath(start, end, verbose);
-        return end.getTimeFromSource();
-    }
-
-    /**
-     * Finds the vertex with the smallest f-score in the open list.
-     *
-     * @param open the open list of vertices
-     * @param f the f-score map
-     * @return the vertex with the smallest f-score
-     */
-    private static WeightedGraph.Vertex findMinF(List<WeightedGraph.Vertex> open, HashMap<WeightedGraph.Vertex, Double> f) {
-        double distanceMin = Double.POSITIVE_INFINITY;
-        WeightedGraph.Vertex min = null;
-        for(WeightedGraph.Vertex s : open) {
-            if(f.get(s) < distanceMin) {
-                distanceMin = f.get(s);
-                min = s;
-            }
+        if(!context.isClosed(end.getN())) {
+            if(verbose) System.out.println(context.getStop() == null ? "no path found: the end vertex is unreachable" : "search stopped: budget spent");
+            return Double.POSITIVE_INFINITY;
         }
-
-        return min;
+        retrievePath(start.getN(), end.getN(), context, verbose);
+        return context.getTimeFromSource(end.getN());
     }
-
-
 }
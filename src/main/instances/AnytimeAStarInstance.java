@@ -0,0 +1,343 @@
+package main.instances;
+
+import main.model.WeightedGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An implementation of ARA* (Anytime Repairing A*): a series of weighted A* searches (see {@link WeightedAStarInstance})
+ * with a decreasing weight {@code epsilon}, each one improving the path found by the previous one.
+ * <p>
+ * The first search, with the largest weight, quickly finds a first path. The next searches do not start over:
+ * they keep the times from source already found, and only expand again the vertices whose time from source
+ * has decreased since they were selected (the <i>inconsistent</i> vertices). Each search publishes a {@link Solution}
+ * with its suboptimality bound: if the heuristic is admissible, the cost of its path is at most {@code bound} times
+ * the cost of the shortest path, where {@code bound} is at most {@code epsilon}.
+ * <p>
+ * The searches stop once the schedule of weights is over, or once the time budget is spent (the first search
+ * always runs to the end): the path found is then the one of the last search completed.
+ * A {@link SearchBudget} is checked at every expansion of every search, the first one included: if it stops the searches,
+ * the path found is the one of the last search completed, or a partial path if no search has been completed.
+ * The trace holds the vertices selected by all the searches.
+ */
+public class AnytimeAStarInstance extends PathFinderInstance {
+    private static final int CLOCK_PERIOD = 64; //expansions between two readings of the clock
+
+    private final int mapSize;
+    private final Heuristic heuristic;
+    private final double[] epsilons;
+    private final long budget;
+    private final ThreadLocal<State> states;
+
+    /**
+     * A path published by one of the searches of ARA*.
+     *
+     * @param epsilon the weight of the heuristic of the search
+     * @param cost the cost of the path found
+     * @param bound the suboptimality bound of the path: its cost is at most {@code bound} times the cost of the shortest path
+     * @param time the time elapsed since the beginning of the first search, in milliseconds
+     */
+    public record Solution(double epsilon, double cost, double bound, double time) {}
+
+    /**
+     * Constructs an {@link AnytimeAStarInstance} for the specified graph, map size, heuristic, weights and time budget.
+     *
+     * @param graph the {@link WeightedGraph} to operate on
+     * @param mapSize the size of the map (used for heuristic calculations)
+     * @param heuristic the heuristic function
+     * @param epsilons the weights of the heuristic of the successive searches, decreasing and at least 1
+     * @param budget the time after which no new search starts, and the current one is abandoned, in milliseconds
+     * @throws IllegalArgumentException if the weights are empty, less than 1 or not decreasing
+     */
+    public AnytimeAStarInstance(WeightedGraph graph, int mapSize, Heuristic heuristic, double[] epsilons, long budget) {
+        super(graph);
+        if(epsilons.length == 0) throw new IllegalArgumentException("Invalid epsilon schedule : no epsilon");
+        for(int k = 0; k < epsilons.length; k++) {
+            if(!(epsilons[k] >= 1.0) || (k > 0 && epsilons[k] > epsilons[k - 1]))
+                throw new IllegalArgumentException("Invalid epsilon schedule : " + Arrays.toString(epsilons) + " (must be decreasing and at least 1)");
+        }
+        this.mapSize = mapSize;
+        this.heuristic = heuristic;
+        this.epsilons = epsilons.clone();
+        this.budget = budget;
+        this.states = ThreadLocal.withInitial(() -> new State(graph.size()));
+    }
+
+    /**
+     * @return the solutions published by the last search of the calling thread, from the first to the last one
+     */
+    public List<Solution> getSolutions() {
+        return states.get().solutions;
+    }
+
+    /**
+     * Performs ARA* to find a path between the start and end vertices, improving it while the time budget allows.
+     *
+     * @param start the starting vertex
+     * @param end the ending vertex
+     * @param verbose whether logs should be output
+     * @return the total cost of the best path found, or {@link Double#POSITIVE_INFINITY} if the end vertex is unreachable
+     */
+    @Override
+    public double searchPath(WeightedGraph.Vertex start, WeightedGraph.Vertex end, boolean verbose) {
+        final long begin = System.nanoTime();
+        final long deadline = begin + budget * 1_000_000L;
+        SearchContext context = newSearch();
+        SearchTrace trace = context.getTrace();
+        IndexedMinHeap open = context.getQueue();
+        State state = states.get();
+        state.reset();
+
+        final int s = start.getN();
+        final int e = end.getN();
+        final int ex = e % mapSize;
+        final int ey = e / mapSize;
+        context.setTimeFromSource(s, 0.0);
+        open.push(s, epsilons[0] * h(s, ex, ey));
+
+        int[] best = null;
+        int i = 0;
+        for(int k = 0; k < epsilons.length; k++) {
+            final double epsilon = epsilons[k];
+            if(k > 0) {
+                if(System.nanoTime() > deadline) break;
+                state.newIteration(open, context, epsilon, this, ex, ey);
+            }
+            if(verbose) System.out.println("searching with epsilon = " + epsilon);
+
+            boolean interrupted = false;
+            while(!open.isEmpty() && open.peekKey() < context.getTimeFromSource(e)) {
+                if(context.isOverBudget() || (k > 0 && i % CLOCK_PERIOD == 0 && System.nanoTime() > deadline)) {
+                    interrupted = true;
+                    break;
+                }
+                int u = open.poll();
+                trace.record(u, context.getPrevious(u));
+                if(verbose) System.out.println("selecting the vertex with the minimum f-score: " + snapshot(u, context));
+                i++;
+                state.close(u);
+                context.close(u); //selected by one of the searches, for the partial path if no search is completed
+
+                double currentTime = context.getTimeFromSource(u);
+                for(int d = 0; d < graph.getDirections(); d++) {
+                    int neighbor = graph.getNeighbor(u, d);
+                    if(neighbor < 0) continue;
+                    double tentative = currentTime + graph.getCost(u, neighbor, d);
+                    if(tentative < context.getTimeFromSource(neighbor)) {
+                        context.setTimeFromSource(neighbor, tentative);
+                        context.setPrevious(neighbor, u);
+                        if(state.isClosed(neighbor)) {
+                            state.addInconsistent(neighbor);
+                        } else {
+                            context.setF(neighbor, tentative + epsilon * h(neighbor, ex, ey));
+                            open.push(neighbor, context.getF(neighbor));
+                        }
+                    }
+                }
+            }
+            if(interrupted) {
+                if(verbose && best != null) System.out.println("budget spent: keeping the last path found");
+                break;
+            }
+
+            if(context.getTimeFromSource(e) == Double.POSITIVE_INFINITY) break; //the whole component of the start vertex has been searched
+            best = state.path(s, e, context);
+            double cost = cost(best);
+            double lower = state.lowerBound(open, context, this, ex, ey, cost);
+            double bound = cost == 0.0 ? 1.0 : lower > 0.0 ? Math.max(1.0, Math.min(epsilon, cost / lower)) : epsilon;
+            Solution solution = new Solution(epsilon, cost, bound, (System.nanoTime() - begin) / 1e6);
+            state.solutions.add(solution);
+            if(verbose) System.out.println("path found: " + solution);
+        }
+
+        if(best == null) {
+            if(verbose) System.out.println(context.getStop() == null ? "no path found: the end vertex is unreachable" : "search stopped: budget spent");
+            return Double.POSITIVE_INFINITY;
+        }
+        retrievePath(best, context, verbose);
+        return cost(best);
+    }
+
+    /**
+     * @param n a vertex
+     * @param ex the x-coordinate of the end vertex
+     * @param ey the y-coordinate of the end vertex
+     * @return the heuristic of the vertex {@code n}
+     */
+    private double h(int n, int ex, int ey) {
+        return heuristic.h(n % mapSize, n / mapSize, ex, ey);
+    }
+
+    /**
+     * @param vertices the vertices of a path, from the start to the end vertex
+     * @return the total cost of the path, summed from the start vertex
+     */
+    private double cost(int[] vertices) {
+        final int columns = graph.getColumns();
+        double cost = 0.0;
+        for(int k = 0; k + 1 < vertices.length; k++) {
+            int from = vertices[k];
+            int to = vertices[k + 1];
+            cost += graph.getCost(from, to, graph.getDirection(to / columns - from / columns, to % columns - from % columns));
+        }
+        return cost;
+    }
+
+    /**
+     * Builds the path of the last search completed, from the end to the start vertex.
+     *
+     * @param vertices the vertices of the path, from the start to the end vertex
+     * @param context the context of the search, holding the path
+     * @param verbose whether logs should be output
+     */
+    private void retrievePath(int[] vertices, SearchContext context, boolean verbose) {
+        if(verbose) System.out.println("\n\nfinal path (from the end to the beginning):");
+        List<WeightedGraph.Vertex> path = context.getPath();
+        for(int k = vertices.length - 1; k >= 0; k--) {
+            WeightedGraph.Vertex v = graph.getVertex(vertices[k]);
+            if(k > 0) v.setPrevious(graph.getVertex(vertices[k - 1]));
+            if(verbose && k > 0) System.out.println(v);
+            path.add(v);
+        }
+    }
+
+    /**
+     * The state of ARA* that is not in the {@link SearchContext}: the vertices closed by the current search
+     * (stamped with the number of the search) and the inconsistent vertices.
+     */
+    private static class State {
+        private final int[] closed;
+        private int iteration;
+        private final int[] inconsistentMarks;
+        private int[] inconsistent;
+        private int inconsistentCount;
+        private final List<Solution> solutions;
+
+        /**
+         * Constructs the {@link State} of the searches of a thread.
+         *
+         * @param size the number of vertices of the graph
+         */
+        private State(int size) {
+            this.closed = new int[size];
+            this.inconsistentMarks = new int[size];
+            this.inconsistent = new int[16];
+            this.solutions = new ArrayList<>();
+        }
+
+        /**
+         * Starts a new series of searches.
+         */
+        private void reset() {
+            nextIteration();
+            inconsistentCount = 0;
+            solutions.clear();
+        }
+
+        /**
+         * Increases the number of the current search: no vertex is closed anymore.
+         */
+        private void nextIteration() {
+            if(iteration == Integer.MAX_VALUE) { //stamps would overflow
+                Arrays.fill(closed, 0);
+                Arrays.fill(inconsistentMarks, 0);
+                iteration = 0;
+            }
+            iteration++;
+        }
+
+        /**
+         * @param n a vertex
+         * @return whether the vertex {@code n} has been selected by the current search
+         */
+        private boolean isClosed(int n) {
+            return closed[n] == iteration;
+        }
+
+        /**
+         * @param n a vertex selected by the current search
+         */
+        private void close(int n) {
+            closed[n] = iteration;
+        }
+
+        /**
+         * Remembers a vertex whose time from source has decreased after it has been selected by the current search.
+         *
+         * @param n the vertex
+         */
+        private void addInconsistent(int n) {
+            if(inconsistentMarks[n] == iteration) return;
+            inconsistentMarks[n] = iteration;
+            if(inconsistentCount == inconsistent.length) inconsistent = Arrays.copyOf(inconsistent, 2*inconsistentCount);
+            inconsistent[inconsistentCount++] = n;
+        }
+
+        /**
+         * Prepares the next search: the inconsistent vertices are opened again, and the f-scores of the open vertices
+         * are computed with the new weight.
+         *
+         * @param open the open vertices
+         * @param context the context of the search
+         * @param epsilon the weight of the heuristic of the next search
+         * @param instance the search, giving the heuristic
+         * @param ex the x-coordinate of the end vertex
+         * @param ey the y-coordinate of the end vertex
+         */
+        private void newIteration(IndexedMinHeap open, SearchContext context, double epsilon, AnytimeAStarInstance instance, int ex, int ey) {
+            int[] vertices = Arrays.copyOf(inconsistent, inconsistentCount + open.size());
+            for(int p = 0; p < open.size(); p++) vertices[inconsistentCount + p] = open.get(p);
+            inconsistentCount = 0;
+            nextIteration();
+            for(int n : vertices) {
+                context.setF(n, context.getTimeFromSource(n) + epsilon * instance.h(n, ex, ey));
+                open.push(n, context.getF(n));
+            }
+        }
+
+        /**
+         * Computes a lower bound of the cost of the shortest path: the smallest unweighted f-score of the open
+         * and inconsistent vertices (any better path goes through one of them).
+         *
+         * @param open the open vertices
+         * @param context the context of the search
+         * @param instance the search, giving the heuristic
+         * @param ex the x-coordinate of the end vertex
+         * @param ey the y-coordinate of the end vertex
+         * @param cost the cost of the path found, which is the bound if there is no open or inconsistent vertex
+         * @return the lower bound
+         */
+        private double lowerBound(IndexedMinHeap open, SearchContext context, AnytimeAStarInstance instance, int ex, int ey, double cost) {
+            double min = cost;
+            for(int p = 0; p < open.size(); p++) {
+                int n = open.get(p);
+                min = Math.min(min, context.getTimeFromSource(n) + instance.h(n, ex, ey));
+            }
+            for(int k = 0; k < inconsistentCount; k++) {
+                int n = inconsistent[k];
+                min = Math.min(min, context.getTimeFromSource(n) + instance.h(n, ex, ey));
+            }
+            return min;
+        }
+
+        /**
+         * @param start the starting vertex
+         * @param end the ending vertex, reached by the search
+         * @param context the context of the search
+         * @return the vertices of the path found, from the start to the end vertex
+         */
+        private int[] path(int start, int end, SearchContext context) {
+            int length = 1;
+            for(int n = end; n != start; n = context.getPrevious(n)) length++;
+            int[] vertices = new int[length];
+            int n = end;
+            for(int k = length - 1; k >= 0; k--) {
+                vertices[k] = n;
+                if(n != start) n = context.getPrevious(n);
+            }
+            return vertices;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package main.instances;
+
+import main.model.WeightedGraph;
+
+/**
+ * An implementation of the bidirectional A* algorithm for finding the shortest path in a weighted graph.
+ * <p>
+ * It is a {@link BidirectionalDijkstraInstance} guided by the consistent average potential
+ * {@code p(v) = (h(v, end) - h(v, start)) / 2}: the forward search orders its vertices by {@code g(v) + p(v)} and the
+ * backward search by {@code g(v) - p(v)}. Both searches then work on the same reduced costs,
+ * so the stopping criterion of bidirectional Dijkstra still holds (as long as the heuristic is consistent).
+ */
+public class BidirectionalAStarInstance extends BidirectionalDijkstraInstance {
+    private final int mapSize;
+    private final Heuristic heuristic;
+
+    /**
+     * Constructs a {@link BidirectionalAStarInstance} for the specified graph, map size, and heuristic.
+     *
+     * @param graph the {@link WeightedGraph} to operate on
+     * @param mapSize the size of the map (used for heuristic calculations)
+     * @param heuristic the heuristic function for A*
+     */
+    public BidirectionalAStarInstance(WeightedGraph graph, int mapSize, Heuristic heuristic) {
+        super(graph);
+        this.mapSize = mapSize;
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * Gives the average of the heuristic towards the end vertex and of the (opposite) heuristic towards the start vertex.
+     *
+     * @param n the vertex
+     * @param start the starting vertex
+     * @param end the ending vertex
+     * @return the potential of the vertex {@code n}
+     */
+    @Override
+    protected double potential(int n, int start, int end) {
+        int x = n % mapSize;
+        int y = n / mapSize;
+        double toEnd = heuristic.h(x, y, end % mapSize, end / mapSize);
+        double toStart = heuristic.h(x, y, start % mapSize, start / mapSize);
+        return (toEnd - toStart)/2.0;
+    }
+}
@@ -0,0 +1,152 @@
+package main.instances;
+
+import main.model.WeightedGraph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An implementation of the bidirectional Dijkstra algorithm for finding the shortest path in a {@link WeightedGraph}.
+ * <p>
+ * Two searches are run at once, one from the start vertex and one from the end vertex (edges of the graph are symmetric),
+ * always expanding the frontier whose next vertex is the closest. Each time an edge links the two searches,
+ * the best path found so far (of cost {@code mu}) is updated, and the search stops as soon as the sum of the smallest keys
+ * of both frontiers is at least {@code mu}.
+ * <p>
+ * The trace interleaves the vertices selected by both searches, so that the two frontiers can be seen meeting.
+ * A search stopped by its budget leaves the vertices selected by the search from the start vertex,
+ * from which a partial path is retrieved.
+ */
+public class BidirectionalDijkstraInstance extends PathFinderInstance {
+    private final ThreadLocal<SearchContext> backwardContexts;
+
+    /**
+     * Constructs a {@link BidirectionalDijkstraInstance} for the specified graph.
+     *
+     * @param graph the {@link WeightedGraph} to operate on
+     */
+    public BidirectionalDijkstraInstance(WeightedGraph graph) {
+        super(graph);
+        this.backwardContexts = ThreadLocal.withInitial(() -> new SearchContext(graph.size()));
+    }
+
+    /**
+     * Gives the potential of a vertex, added to its time from source in the key of the forward search
+     * and subtracted from it in the key of the backward search.
+     * Bidirectional Dijkstra uses no potential: this is overridden by {@link BidirectionalAStarInstance}.
+     *
+     * @param n the vertex
+     * @param start the starting vertex
+     * @param end the ending vertex
+     * @return the potential of the vertex {@code n}
+     */
+    protected double potential(int n, int start, int end) {
+        return 0.0;
+    }
+
+    /**
+     * Performs the bidirectional search to find the shortest path between the start and end vertices.
+     *
+     * @param start the starting vertex
+     * @param end the ending vertex
+     * @param verbose whether logs should be output
+     * @return the total cost of the shortest path, or {@link Double#POSITIVE_INFINITY} if the end vertex is unreachable
+     */
+    @Override
+    public double searchPath(WeightedGraph.Vertex start, WeightedGraph.Vertex end, boolean verbose) {
+        SearchContext forward = newSearch();
+        SearchContext backward = backwardContexts.get();
+        backward.reset();
+        SearchTrace trace = forward.getTrace();
+        IndexedMinHeap forwardQueue = forward.getQueue();
+        IndexedMinHeap backwardQueue = backward.getQueue();
+
+        final int s = start.getN();
+        final int t = end.getN();
+        forward.setTimeFromSource(s, 0.0);
+        forwardQueue.push(s, potential(s, s, t));
+        backward.setTimeFromSource(t, 0.0);
+        backwardQueue.push(t, -potential(t, s, t));
+
+        double mu = s == t ? 0.0 : Double.POSITIVE_INFINITY;
+        int meet = s == t ? s : -1;
+        while(!forwardQueue.isEmpty() && !backwardQueue.isEmpty()) {
+            if(forwardQueue.peekKey() + backwardQueue.peekKey() >= mu) break;
+            if(forward.isOverBudget()) break; //the budget counts the selections of both searches
+
+            boolean isForward = forwardQueue.peekKey() <= backwardQueue.peekKey();
+            SearchContext current = isForward ? forward : backward;
+            SearchContext other = isForward ? backward : forward;
+            IndexedMinHeap queue = isForward ? forwardQueue : backwardQueue;
+            double sign = isForward ? 1.0 : -1.0;
+
+            int u = queue.poll();
+            trace.record(u, current.getPrevious(u));
+            if(verbose) System.out.println("selecting the vertex with the minimum key (" + (isForward ? "forward" : "backward") + "): " + snapshot(u, current));
+            current.close(u);
+
+            double currentTime = current.getTimeFromSource(u);
+            for(int d = 0; d < graph.getDirections(); d++) {
+                int neighbor = graph.getNeighbor(u, d);
+                if(neighbor < 0) continue;
+                double tentative = currentTime + graph.getCost(u, neighbor, d);
+                if(tentative < current.getTimeFromSource(neighbor)) {
+                    current.setTimeFromSource(neighbor, tentative);
+                    current.setPrevious(neighbor, u);
+                    current.open(neighbor);
+                    queue.push(neighbor, tentative + sign*potential(neighbor, s, t));
+                }
+                double through = current.getTimeFromSource(neighbor) + other.getTimeFromSource(neighbor);
+                if(through < mu) {
+                    if(verbose) System.out.println("both searches meet at " + neighbor + " with cost: " + through);
+                    mu = through;
+                    meet = neighbor;
+                }
+            }
+        }
+
+        if(forward.getStop() != null) {
+            if(verbose) System.out.println("search stopped: budget spent");
+            return Double.POSITIVE_INFINITY;
+        }
+        if(meet < 0) {
+            if(verbose) System.out.println("no path found: the end vertex is unreachable");
+            return Double.POSITIVE_INFINITY;
+        }
+        retrievePath(s, t, meet, forward, backward, verbose);
+        return mu;
+    }
+
+    /**
+     * Reconstructs the shortest path from the start to the end vertex, joining both searches at the meeting vertex.
+     *
+     * @param start the starting vertex
+     * @param end the ending vertex
+     * @param meet the vertex where both searches meet on the shortest path
+     * @param forward the context of the search from the start vertex
+     * @param backward the context of the search from the end vertex
+     * @param verbose whether logs should be output
+     */
+    private void retrievePath(int start, int end, int meet, SearchContext forward, SearchContext backward, boolean verbose) {
+        List<Integer> vertices = new ArrayList<>(); //from the end to the beginning
+        for(int n = meet; n != start; n = forward.getPrevious(n)) vertices.add(n);
+        vertices.add(start);
+        List<Integer> toEnd = new ArrayList<>(); //from the meeting vertex (excluded) to the end
+        for(int n = meet; n != end; ) {
+            n = backward.getPrevious(n);
+            toEnd.add(n);
+        }
+        Collections.reverse(toEnd);
+        vertices.addAll(0, toEnd);
+
+        if(verbose) System.out.println("\n\nfinal path (from the end to the beginning):");
+        List<WeightedGraph.Vertex> path = forward.getPath();
+        for(int k = 0; k < vertices.size(); k++) {
+            WeightedGraph.Vertex v = graph.getVertex(vertices.get(k));
+            if(k + 1 < vertices.size()) v.setPrevious(graph.getVertex(vertices.get(k + 1)));
+            if(verbose && k + 1 < vertices.size()) System.out.println(v);
+            path.add(v);
+        }
+    }
+}
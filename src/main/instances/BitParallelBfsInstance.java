@@ -0,0 +1,393 @@
+package main.instances;
+
+import main.model.WeightedGraph;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A breadth-first search on the vertices of the smallest weight (the <i>floor</i>) of a graph with at most two weights,
+ * such as mazes made of floor and walls, expanding 64 vertices at once.
+ * <p>
+ * The floor is packed in a bitboard: each line of the grid is a row of {@code long} words, one bit per vertex.
+ * Between floor vertices, a straight move costs the floor weight and a diagonal move {@code sqrt(2)} times more,
+ * so the time from source of a floor vertex is {@code floor * (a + b*sqrt(2))} where {@code a} and {@code b} are
+ * the numbers of straight and diagonal moves. The search settles these levels {@code (a, b)} in increasing order,
+ * and each level is a list of words: expanding a word to its neighbors is a few shifts, ands and ors.
+ * On 4-connected graphs, there are no diagonal moves and the levels are the ones of a plain breadth-first search.
+ * <p>
+ * A path through a heavier vertex may still be shorter than any path on the floor: if the floor path found
+ * costs more than the lower bound of such paths (or if the start or end vertex is not on the floor),
+ * the search falls back to {@link HeapDijkstraInstance}. The costs found are always those of {@link DijkstraInstance}.
+ * <p>
+ * See {@link #isSuitable(WeightedGraph)} to know whether a graph has at most two weights.
+ */
+public class BitParallelBfsInstance extends HeapDijkstraInstance {
+    private static final double SQRT2 = Math.sqrt(2);
+    /**
+     * Orders the levels {@code (a, b)}, packed in a {@code long}, by increasing {@code a + b*sqrt(2)}.
+     */
+    private static final Comparator<Long> LEVEL_ORDER = Comparator.<Long>comparingDouble(key -> (key >>> 32) + (key & 0xFFFFFFFFL)*SQRT2)
+            .thenComparingLong(key -> key);
+
+    private final int words;
+    private final long[] floor;
+    private final int floorWeight;
+    private final int wallWeight;
+    private final ThreadLocal<State> states;
+
+    /**
+     * Constructs a {@link BitParallelBfsInstance} for the specified graph.
+     *
+     * @param graph the {@link WeightedGraph} to operate on (its costs must be computed, see {@link WeightedGraph#computeCosts()})
+     * @throws IllegalArgumentException if the graph has more than two weights (see {@link #isSuitable(WeightedGraph)})
+     */
+    public BitParallelBfsInstance(WeightedGraph graph) {
+        super(graph);
+        int[] weights = weightsOf(graph);
+        if(weights == null) throw new IllegalArgumentException("Invalid graph : more than two weights");
+        this.floorWeight = weights[0];
+        this.wallWeight = weights[1];
+        this.words = (graph.getColumns() + 63) >>> 6;
+        this.floor = new long[graph.getLines() * words];
+        for(int n = 0; n < graph.size(); n++) {
+            if(graph.getWeight(n) == floorWeight) floor[word(n)] |= 1L << n % graph.getColumns();
+        }
+        this.states = ThreadLocal.withInitial(() -> new State(floor.length, graph.size()));
+    }
+
+    /**
+     * @param graph a graph
+     * @return whether the graph has at most two weights, so that a {@link BitParallelBfsInstance} can be used on it
+     */
+    public static boolean isSuitable(WeightedGraph graph) {
+        return weightsOf(graph) != null;
+    }
+
+    /**
+     * @param graph a graph
+     * @return the smallest and the largest weight of the graph (the largest is {@link Integer#MAX_VALUE} if there is
+     * a single weight), or {@code null} if the graph has more than two weights
+     */
+    private static int[] weightsOf(WeightedGraph graph) {
+        int first = -1;
+        int second = -1;
+        for(int n = 0; n < graph.size(); n++) {
+            int weight = graph.getWeight(n);
+            if(weight == first || weight == second) continue;
+            if(first < 0) first = weight;
+            else if(second < 0) second = weight;
+            else return null;
+        }
+        if(second < 0) return new int[]{first, Integer.MAX_VALUE};
+        return new int[]{Math.min(first, second), Math.max(first, second)};
+    }
+
+    /**
+     * @param n a vertex
+     * @return the index of the word holding the vertex {@code n} in a bitboard
+     */
+    private int word(int n) {
+        int columns = graph.getColumns();
+        return n / columns * words + (n % columns >>> 6);
+    }
+
+    /**
+     * Searches the shortest path between the start and end vertices on the floor, level by level, and falls back to
+     * the Dijkstra algorithm if a path through heavier vertices could be shorter.
+     *
+     * @param start the starting vertex
+     * @param end the ending vertex
+     * @param verbose whether logs should be output
+     * @return the total cost of the shortest path, or {@link Double#POSITIVE_INFINITY} if the end vertex is unreachable
+     */
+    @Override
+    public double searchPath(WeightedGraph.Vertex start, WeightedGraph.Vertex end, boolean verbose) {
+        final int s = start.getN();
+        final int e = end.getN();
+        if(graph.getWeight(s) != floorWeight || graph.getWeight(e) != floorWeight) {
+            if(verbose) System.out.println("the start or end vertex is not on the floor: searching with the Dijkstra algorithm");
+            return super.searchPath(start, end, verbose);
+        }
+        SearchContext context = newSearch();
+        SearchTrace trace = context.getTrace();
+        State state = states.get();
+        state.reset();
+
+        final int columns = graph.getColumns();
+        state.frontier(0L).add(word(s), 1L << s % columns);
+        int level = -1;
+        boolean reached = false;
+        boolean stopped = false;
+        while(!reached && !stopped && !state.pending.isEmpty()) {
+            Map.Entry<Long, Frontier> entry = state.pending.pollFirstEntry();
+            final long key = entry.getKey();
+            Frontier frontier = entry.getValue();
+            if(++level == state.levels.length) state.levels = Arrays.copyOf(state.levels, 2*level);
+            state.levels[level] = key;
+            if(verbose) System.out.println("selecting the vertices after " + (key >>> 32) + " straight and " + (key & 0xFFFFFFFFL) + " diagonal moves");
+
+            for(int k = 0; k < frontier.count && !reached && !stopped; k++) {
+                final int index = frontier.indices[k];
+                final long bits = frontier.bits[k] & ~state.visited[index];
+                if(bits == 0) continue;
+                state.visited[index] |= bits;
+                final int base = index / words * columns + (index % words << 6);
+                for(long b = bits; b != 0; b &= b - 1) {
+                    if(context.isOverBudget()) { //the vertices left in the word are not settled
+                        state.visited[index] &= ~b;
+                        stopped = true;
+                        break;
+                    }
+                    int n = base + Long.numberOfTrailingZeros(b);
+                    state.labels[n] = level;
+                    trace.record(n, -1);
+                    if(n == e) reached = true;
+                }
+                if(!reached && !stopped) expand(state, index, bits, key);
+            }
+            state.recycle(frontier);
+        }
+        for(Frontier frontier : state.pending.values()) state.recycle(frontier);
+        state.pending.clear();
+
+        if(stopped) {
+            if(verbose) System.out.println("search stopped: budget spent");
+            closeSettled(state, context);
+            return Double.POSITIVE_INFINITY;
+        }
+        double cost = reached ? retrieveFloorPath(s, e, state, context, verbose) : Double.POSITIVE_INFINITY;
+        if(cost > bound(s, e)) { //a path through heavier vertices could be shorter
+            if(verbose) System.out.println("the floor path may not be the shortest: searching with the Dijkstra algorithm");
+            return super.searchPath(start, end, verbose);
+        }
+        return cost;
+    }
+
+    /**
+     * Gives a lower bound of the cost of the paths going through a vertex heavier than the floor: every move costs at
+     * least the floor weight times its length, and the two moves around a heavier vertex cost at least
+     * {@code (wall - floor) / 2} more each.
+     *
+     * @param start the starting vertex
+     * @param end the ending vertex
+     * @return the lower bound of the cost of the paths between both vertices through a heavier vertex
+     */
+    private double bound(int start, int end) {
+        if(wallWeight == Integer.MAX_VALUE) return Double.POSITIVE_INFINITY;
+        final int columns = graph.getColumns();
+        int dl = Math.abs(start / columns - end / columns);
+        int dc = Math.abs(start % columns - end % columns);
+        double length = graph.isDiagonal() ? Math.abs(dl - dc) + Math.min(dl, dc)*SQRT2 : dl + dc;
+        return floorWeight*length + (wallWeight - floorWeight);
+    }
+
+    /**
+     * Adds the floor neighbors of a word of settled vertices to the next levels: straight neighbors are one straight
+     * move further, diagonal neighbors one diagonal move further.
+     *
+     * @param state the state of the search
+     * @param index the index of the word
+     * @param bits the vertices of the word settled at the level {@code key}
+     * @param key the level {@code (a, b)} of these vertices
+     */
+    private void expand(State state, int index, long bits, long key) {
+        final int line = index / words;
+        final int w = index % words;
+        final long horizontal = bits << 1 | bits >>> 1;
+        final long toLeft = bits << 63; //into the last bit of the previous word
+        final long toRight = bits >>> 63; //into the first bit of the next word
+        final boolean up = line > 0;
+        final boolean down = line + 1 < graph.getLines();
+        final boolean left = w > 0;
+        final boolean right = w + 1 < words;
+
+        Frontier straight = state.frontier(key + (1L << 32));
+        emit(state, straight, index, horizontal);
+        if(left) emit(state, straight, index - 1, toLeft);
+        if(right) emit(state, straight, index + 1, toRight);
+        if(up) emit(state, straight, index - words, bits);
+        if(down) emit(state, straight, index + words, bits);
+        if(!graph.isDiagonal()) return;
+
+        Frontier diagonal = state.frontier(key + 1);
+        for(int neighbor : new int[]{up ? index - words : -1, down ? index + words : -1}) {
+            if(neighbor < 0) continue;
+            emit(state, diagonal, neighbor, horizontal);
+            if(left) emit(state, diagonal, neighbor - 1, toLeft);
+            if(right) emit(state, diagonal, neighbor + 1, toRight);
+        }
+    }
+
+    /**
+     * Adds the floor vertices of a word that have not been settled yet to a level.
+     *
+     * @param state the state of the search
+     * @param frontier the level
+     * @param index the index of the word
+     * @param bits the vertices of the word
+     */
+    private void emit(State state, Frontier frontier, int index, long bits) {
+        bits &= floor[index] & ~state.visited[index];
+        if(bits != 0) frontier.add(index, bits);
+    }
+
+    /**
+     * Reconstructs the path found on the floor, from the end back to the start: the previous vertex of a vertex settled
+     * at the level {@code (a, b)} is a straight neighbor settled at {@code (a-1, b)} or a diagonal neighbor settled at
+     * {@code (a, b-1)}.
+     *
+     * @param start the starting vertex
+     * @param end the ending vertex
+     * @param state the state of the search
+     * @param context the context of the search
+     * @param verbose whether logs should be output
+     * @return the cost of the path, summed from the start as a search on the graph would
+     */
+    private double retrieveFloorPath(int start, int end, State state, SearchContext context, boolean verbose) {
+        int[] steps = new int[16];
+        int count = 0;
+        int n = end;
+        while(n != start) {
+            int previous = previousOnFloor(n, state);
+            context.setPrevious(n, previous);
+            if(count + 1 >= steps.length) steps = Arrays.copyOf(steps, 2*steps.length);
+            steps[count++] = n;
+            n = previous;
+        }
+        steps[count] = start;
+
+        double cost = 0.0;
+        for(int k = count; k > 0; k--) {
+            int from = steps[k];
+            int to = steps[k - 1];
+            int d = graph.getDirection(to / graph.getColumns() - from / graph.getColumns(), to % graph.getColumns() - from % graph.getColumns());
+            cost += graph.getCost(from, to, d);
+        }
+        retrievePath(start, end, context, verbose);
+        return cost;
+    }
+
+    /**
+     * Finds the previous vertex of a settled vertex (other than the start vertex) on the floor.
+     *
+     * @param n the settled vertex
+     * @param state the state of the search
+     * @return a straight neighbor settled at the level {@code (a-1, b)} or a diagonal neighbor settled at
+     * {@code (a, b-1)} if the vertex {@code n} has been settled at {@code (a, b)}
+     */
+    private int previousOnFloor(int n, State state) {
+        long key = state.levels[state.labels[n]];
+        for(int d = 0; d < graph.getDirections(); d++) {
+            int neighbor = graph.getNeighbor(n, d);
+            if(neighbor < 0 || (state.visited[word(neighbor)] & 1L << neighbor % graph.getColumns()) == 0) continue;
+            long expected = key - (graph.isDiagonal(d) ? 1L : 1L << 32);
+            if(state.levels[state.labels[neighbor]] == expected) return neighbor;
+        }
+        return -1;
+    }
+
+    /**
+     * Closes the vertices settled by a search stopped by its budget, with their time from source and previous vertex,
+     * so that a partial path can be retrieved (see {@link #searchPath(WeightedGraph.Vertex, WeightedGraph.Vertex, SearchBudget, boolean)}).
+     *
+     * @param state the state of the search
+     * @param context the context of the search
+     */
+    private void closeSettled(State state, SearchContext context) {
+        final int columns = graph.getColumns();
+        for(int index = 0; index < state.visited.length; index++) {
+            final int base = index / words * columns + (index % words << 6);
+            for(long b = state.visited[index]; b != 0; b &= b - 1) {
+                int n = base + Long.numberOfTrailingZeros(b);
+                long key = state.levels[state.labels[n]];
+                context.setTimeFromSource(n, floorWeight*((key >>> 32) + (key & 0xFFFFFFFFL)*SQRT2));
+                if(key != 0L) context.setPrevious(n, previousOnFloor(n, state));
+                context.close(n);
+            }
+        }
+    }
+
+    /**
+     * A level of the search: a list of words of vertices, which may hold the same word several times.
+     */
+    private static class Frontier {
+        private int[] indices = new int[64];
+        private long[] bits = new long[64];
+        private int count;
+
+        /**
+         * Adds a word to this level.
+         *
+         * @param index the index of the word
+         * @param word the vertices of the word
+         */
+        private void add(int index, long word) {
+            if(count == indices.length) {
+                indices = Arrays.copyOf(indices, 2*count);
+                bits = Arrays.copyOf(bits, 2*count);
+            }
+            indices[count] = index;
+            bits[count++] = word;
+        }
+    }
+
+    /**
+     * The state of the searches of a thread: the settled vertices (a bitboard), the level of each settled vertex,
+     * and the levels not settled yet.
+     */
+    private static class State {
+        private final long[] visited;
+        private final int[] labels;
+        private long[] levels;
+        private final TreeMap<Long, Frontier> pending;
+        private final ArrayDeque<Frontier> pool;
+
+        /**
+         * Constructs the {@link State} of the searches of a thread.
+         *
+         * @param words the number of words of a bitboard of the graph
+         * @param size the number of vertices of the graph
+         */
+        private State(int words, int size) {
+            this.visited = new long[words];
+            this.labels = new int[size];
+            this.levels = new long[64];
+            this.pending = new TreeMap<>(LEVEL_ORDER);
+            this.pool = new ArrayDeque<>();
+        }
+
+        /**
+         * Starts a new search: no vertex is settled (the labels are only read for settled vertices).
+         */
+        private void reset() {
+            Arrays.fill(visited, 0L);
+        }
+
+        /**
+         * @param key a level {@code (a, b)}
+         * @return the list of words of this level, created if needed
+         */
+        private Frontier frontier(long key) {
+            Frontier frontier = pending.get(key);
+            if(frontier == null) {
+                frontier = pool.isEmpty() ? new Frontier() : pool.pop();
+                pending.put(key, frontier);
+            }
+            return frontier;
+        }
+
+        /**
+         * Empties a level and keeps it for a later one.
+         *
+         * @param frontier the level
+         */
+        private void recycle(Frontier frontier) {
+            frontier.count = 0;
+            pool.push(frontier);
+        }
+    }
+}
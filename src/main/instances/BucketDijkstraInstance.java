@@ -0,0 +1,198 @@
+package main.instances;
+
+import main.model.WeightedGraph;
+
+import java.util.Arrays;
+
+/**
+ * An implementation of the Dijkstra algorithm using a bucket queue (Dial's algorithm) instead of a comparison heap,
+ * for graphs whose weights are small integers (such as image maps, whose weights are between 0 and 100).
+ * <p>
+ * Costs are not integers ({@code (a+b)/2} or {@code (a+b)/sqrt(2)}), so each vertex goes into the bucket of its
+ * time from source in fixed point, truncated to {@code 1/}{@link #SCALE}. As no edge costs more than
+ * {@code sqrt(2)} times the largest weight, only a small window of buckets is in use at once, and it is stored
+ * as a circular array. Vertices of the same bucket are selected in any order, so a selected vertex can still be
+ * improved by another vertex of its bucket: it is then put back into the queue and selected again,
+ * which keeps the costs found exactly the same as with {@link HeapDijkstraInstance}.
+ * <p>
+ * See {@link #isSuitable(WeightedGraph)} to know whether the weights of a graph are small enough.
+ */
+public class BucketDijkstraInstance extends PathFinderInstance {
+    /**
+     * The number of buckets per unit of cost.
+     */
+    public static final int SCALE = 4;
+    /**
+     * The largest number of buckets for which a bucket queue is used.
+     */
+    public static final int MAX_BUCKETS = 1 << 14;
+
+    private final int bucketCount;
+    private final ThreadLocal<Buckets> buckets;
+
+    /**
+     * Constructs a {@link BucketDijkstraInstance} for the specified graph.
+     *
+     * @param graph the {@link WeightedGraph} to operate on (its costs must be computed, see {@link WeightedGraph#computeCosts()})
+     * @throws IllegalArgumentException if the weights of the graph are too large (see {@link #isSuitable(WeightedGraph)})
+     */
+    public BucketDijkstraInstance(WeightedGraph graph) {
+        super(graph);
+        if(!isSuitable(graph))
+            throw new IllegalArgumentException("Invalid graph : weights up to " + graph.getMaxWeight() + " need too many buckets");
+        this.bucketCount = bucketCount(graph);
+        this.buckets = ThreadLocal.withInitial(() -> new Buckets(bucketCount));
+    }
+
+    /**
+     * Gives the number of buckets needed for a graph: every time from source in the queue is less than the largest cost
+     * of an edge away from the smallest one.
+     *
+     * @param graph the graph
+     * @return the number of buckets of the circular array
+     */
+    private static int bucketCount(WeightedGraph graph) {
+        double maxCost = graph.getMaxWeight() * (graph.isDiagonal() ? Math.sqrt(2) : 1.0);
+        return (int) Math.ceil(maxCost * SCALE) + 2;
+    }
+
+    /**
+     * @param graph a graph
+     * @return whether the weights of the graph are small enough for a bucket queue to be used
+     */
+    public static boolean isSuitable(WeightedGraph graph) {
+        return bucketCount(graph) <= MAX_BUCKETS;
+    }
+
+    /**
+     * @param time a time from source
+     * @return the bucket of this time from source, before the circular array
+     */
+    private static int key(double time) {
+        return (int) (time * SCALE);
+    }
+
+    /**
+     * Performs the Dijkstra algorithm to find the shortest path between the start and end vertices.
+     *
+     * @param start the starting vertex
+     * @param end the ending vertex
+     * @param verbose whether logs should be output
+     * @return the total cost of the shortest path, or {@link Double#POSITIVE_INFINITY} if the end vertex is unreachable
+     */
+    @Override
+    public double searchPath(WeightedGraph.Vertex start, WeightedGraph.Vertex end, boolean verbose) {
+        SearchContext context = newSearch();
+        SearchTrace trace = context.getTrace();
+        Buckets queue = buckets.get();
+        queue.clear();
+
+        final int size = graph.size();
+        final int e = end.getN();
+        context.setTimeFromSource(start.getN(), 0);
+        queue.add(0, start.getN());
+        int i = 0;
+        for(int current = 0; !queue.isEmpty() && context.getStop() == null; current++) {
+            if(context.getTimeFromSource(e) != Double.POSITIVE_INFINITY && current > key(context.getTimeFromSource(e))) break;
+            while(!queue.isEmpty(current)) {
+                int u = queue.poll(current);
+                if(context.isClosed(u) || key(context.getTimeFromSource(u)) != current) continue; //already selected, or improved since
+                if(context.isOverBudget()) break;
+                if(i%10000 == 0) System.out.println("searching..." +
+                        " up to ~" + (1.0-(double)i/(double)size)*100.0 + "% remaining"); //max n
+                trace.record(u, context.getPrevious(u));
+                if(verbose) System.out.println("selecting the vertex with the minimum weight: " + snapshot(u, context));
+                context.close(u);
+                double currentTime = context.getTimeFromSource(u);
+                for(int d = 0; d < graph.getDirections(); d++) {
+                    int neighbor = graph.getNeighbor(u, d);
+                    if(neighbor < 0) continue;
+                    double weight = graph.getCost(u, neighbor, d);
+                    if(context.getTimeFromSource(neighbor) > currentTime + weight) {
+                        if(verbose) System.out.println("update neighbor value: (" + graph.getWeight(neighbor) + "+" + graph.getWeight(u) + ")/2 = " + weight);
+                        context.setTimeFromSource(neighbor, currentTime+weight);
+                        context.setPrevious(neighbor, u);
+                        context.open(neighbor);
+                        queue.add(key(currentTime+weight), neighbor);
+                    }
+                }
+                i++;
+            }
+        }
+
+        if(context.getTimeFromSource(e) == Double.POSITIVE_INFINITY || context.getStop() != null) {
+            if(verbose) System.out.println(context.getStop() == null ? "no path found: the end vertex is unreachable" : "search stopped: budget spent");
+            return Double.POSITIVE_INFINITY;
+        }
+        retrievePath(start.getN(), e, context, verbose);
+        return context.getTimeFromSource(e);
+    }
+
+    /**
+     * A circular array of buckets of vertices, each bucket being a stack.
+     * Outdated entries are not removed when a vertex is moved to another bucket: they are skipped when polled.
+     */
+    private static class Buckets {
+        private final int[][] vertices;
+        private final int[] sizes;
+        private int count;
+
+        /**
+         * Constructs empty {@link Buckets}.
+         *
+         * @param bucketCount the number of buckets
+         */
+        private Buckets(int bucketCount) {
+            this.vertices = new int[bucketCount][4];
+            this.sizes = new int[bucketCount];
+        }
+
+        /**
+         * Removes all vertices from the buckets.
+         */
+        private void clear() {
+            Arrays.fill(sizes, 0);
+            count = 0;
+        }
+
+        /**
+         * @return whether all buckets are empty
+         */
+        private boolean isEmpty() {
+            return count == 0;
+        }
+
+        /**
+         * @param key the key of a bucket
+         * @return whether the bucket of this key is empty
+         */
+        private boolean isEmpty(int key) {
+            return sizes[key % sizes.length] == 0;
+        }
+
+        /**
+         * Adds a vertex to a bucket.
+         *
+         * @param key the key of the bucket
+         * @param n the vertex
+         */
+        private void add(int key, int n) {
+            int b = key % sizes.length;
+            if(sizes[b] == vertices[b].length) vertices[b] = Arrays.copyOf(vertices[b], 2*sizes[b]);
+            vertices[b][sizes[b]++] = n;
+            count++;
+        }
+
+        /**
+         * Removes a vertex from a bucket.
+         *
+         * @param key the key of a non-empty bucket
+         * @return the vertex removed
+         */
+        private int poll(int key) {
+            int b = key % sizes.length;
+            count--;
+            return vertices[b][--sizes[b]];
+        }
+    }
+}
@@ -0,0 +1,460 @@
+package main.instances;
+
+import main.model.WeightedGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * The abstract graph of a {@link WeightedGraph} used by {@link HierarchicalInstance} (HPA*).
+ * <p>
+ * The grid is partitioned into square <i>clusters</i>. A cell along the border between two adjacent clusters is crossed
+ * by its cheapest edge to a cell on the other side of the border (straight across, or diagonally on an 8-connected grid),
+ * and the border is cut into <i>entrances</i>: maximal runs of cells crossed at the same cost.
+ * An entrance longer than {@link #WINDOW} cells is cut into windows of {@link #WINDOW} cells, and the crossing of
+ * the middle of each window (or of the entrance) is a <i>transition</i>: a pair of neighbor vertices, one on each side
+ * of the border. A wall along a border is thus an entrance of its own, and the cells around it get their own transitions
+ * instead of being crossed through the wall.
+ * Each vertex of a transition is a <i>node</i> of the abstract graph, linked to the other vertex of the transition
+ * (the cost of this edge is the cost of the edge of the graph) and to every other node of its cluster
+ * (the cost of this edge is the cost of the shortest path between both nodes staying inside the cluster).
+ * <p>
+ * Every border cell has its own pair of node identifiers, only used while a transition is placed on this cell:
+ * a change of weight (see {@link #update(int)}) moves the transitions of the borders of the cluster changed
+ * without renumbering the nodes, and only recomputes the edges inside the clusters whose nodes or weights have changed.
+ * The edges inside the clusters are computed in parallel.
+ */
+public class ClusterAbstraction {
+    /**
+     * The default length of the side of a cluster.
+     */
+    public static final int DEFAULT_CLUSTER_SIZE = 32;
+    /**
+     * The maximum number of border cells per transition.
+     */
+    public static final int WINDOW = 8;
+
+    private final WeightedGraph graph;
+    private final int clusterSize;
+    private final int clusterLines;
+    private final int clusterColumns;
+    private final int[] borderFirsts;
+    private final int[] borderSteps;
+    private final int[] borderDirections;
+    private final int[] borderLengths;
+    private final int[] borderSlots;
+    private final boolean[] placed;
+    private final int[] nodeVertices;
+    private final int[] partners;
+    private final int[] partnerDirections;
+    private final int[] nodeClusters;
+    private final int[] nodeIndexes;
+    private final int[][] clusterCandidates;
+    private final int[][] clusterNodes;
+    private final double[][] intraCosts;
+
+    /**
+     * Constructs the {@link ClusterAbstraction} of a graph, computing its transitions and the edges inside its clusters.
+     *
+     * @param graph the graph
+     * @param clusterSize the length of the side of a cluster
+     * @throws IllegalArgumentException if the size of the clusters is less than 2
+     */
+    public ClusterAbstraction(WeightedGraph graph, int clusterSize) {
+        if(clusterSize < 2) throw new IllegalArgumentException("Invalid cluster size : " + clusterSize + " (must be at least 2)");
+        this.graph = graph;
+        this.clusterSize = clusterSize;
+        this.clusterLines = (graph.getLines() + clusterSize - 1) / clusterSize;
+        this.clusterColumns = (graph.getColumns() + clusterSize - 1) / clusterSize;
+
+        List<int[]> borders = findBorders();
+        this.borderFirsts = new int[borders.size()];
+        this.borderSteps = new int[borders.size()];
+        this.borderDirections = new int[borders.size()];
+        this.borderLengths = new int[borders.size()];
+        this.borderSlots = new int[borders.size() + 1];
+        for(int b = 0; b < borders.size(); b++) {
+            int[] border = borders.get(b); //first vertex, step between two cells, direction across, length
+            borderFirsts[b] = border[0];
+            borderSteps[b] = border[1];
+            borderDirections[b] = border[2];
+            borderLengths[b] = border[3];
+            borderSlots[b + 1] = borderSlots[b] + border[3];
+        }
+
+        int slots = borderSlots[borders.size()];
+        this.placed = new boolean[slots];
+        this.nodeVertices = new int[2*slots];
+        this.partners = new int[2*slots];
+        this.partnerDirections = new int[2*slots];
+        this.nodeClusters = new int[2*slots];
+        this.nodeIndexes = new int[2*slots];
+        int[] candidateCounts = new int[clusterLines*clusterColumns];
+        for(int b = 0; b < borders.size(); b++) {
+            for(int slot = borderSlots[b]; slot < borderSlots[b + 1]; slot++) {
+                int vertex = borderFirsts[b] + (slot - borderSlots[b])*borderSteps[b];
+                for(int side = 0; side < 2; side++) {
+                    int node = 2*slot + side;
+                    partners[node] = 2*slot + 1 - side;
+                    nodeClusters[node] = getCluster(side == 0 ? vertex : graph.getNeighbor(vertex, borderDirections[b]));
+                    candidateCounts[nodeClusters[node]]++;
+                }
+            }
+            placeTransitions(b); //sets the vertices of the nodes, and the directions between partners
+        }
+        this.clusterCandidates = new int[candidateCounts.length][];
+        for(int c = 0; c < candidateCounts.length; c++) clusterCandidates[c] = new int[candidateCounts[c]];
+        Arrays.fill(candidateCounts, 0);
+        for(int node = 0; node < nodeClusters.length; node++) clusterCandidates[nodeClusters[node]][candidateCounts[nodeClusters[node]]++] = node;
+
+        this.clusterNodes = new int[candidateCounts.length][];
+        this.intraCosts = new double[candidateCounts.length][];
+        IntStream.range(0, candidateCounts.length).parallel().forEach(c -> {
+            indexCluster(c);
+            computeCluster(c);
+        });
+    }
+
+    /**
+     * Finds the borders between adjacent clusters.
+     *
+     * @return the borders, as arrays {first vertex (on the side of the first cluster), step between two cells of the border,
+     * direction from a cell to its neighbor in the next cluster, number of cells}
+     */
+    private List<int[]> findBorders() {
+        final int lines = graph.getLines();
+        final int columns = graph.getColumns();
+        List<int[]> borders = new ArrayList<>();
+        int down = graph.getDirection(1, 0);
+        int right = graph.getDirection(0, 1);
+        for(int line = clusterSize; line < lines; line += clusterSize) { //horizontal borders, between line-1 and line
+            for(int col = 0; col < columns; col += clusterSize) {
+                borders.add(new int[]{(line-1)*columns + col, 1, down, Math.min(col + clusterSize, columns) - col});
+            }
+        }
+        for(int col = clusterSize; col < columns; col += clusterSize) { //vertical borders, between col-1 and col
+            for(int line = 0; line < lines; line += clusterSize) {
+                borders.add(new int[]{line*columns + col-1, columns, right, Math.min(line + clusterSize, lines) - line});
+            }
+        }
+        return borders;
+    }
+
+    /**
+     * Places the transitions of a border, in the middle of each window of its entrances.
+     * The costs of the graph must be up to date (see {@link WeightedGraph#computeCosts()}).
+     *
+     * @param border the border
+     * @return whether the transitions of the border have changed
+     */
+    private boolean placeTransitions(int border) {
+        final int first = borderFirsts[border];
+        final int step = borderSteps[border];
+        final int across = borderDirections[border];
+        final int length = borderLengths[border];
+        final int lineOffset = graph.getLineOffset(across);
+        final int columnOffset = graph.getColumnOffset(across);
+        final int[] sideways = step == 1 ? new int[]{graph.getDirection(lineOffset, -1), graph.getDirection(lineOffset, 1)}
+                : new int[]{graph.getDirection(-1, columnOffset), graph.getDirection(1, columnOffset)}; //-1 without diagonals
+
+        int[] crossings = new int[length]; //the direction of the cheapest crossing of each cell
+        double[] costs = new double[length];
+        for(int i = 0; i < length; i++) {
+            int vertex = first + i*step;
+            crossings[i] = across;
+            costs[i] = graph.getCost(vertex, graph.getNeighbor(vertex, across), across);
+            for(int side = 0; side < 2; side++) {
+                int d = sideways[side];
+                int j = i + 2*side - 1; //the cell of the border the crossing leads in front of
+                if(d < 0 || j < 0 || j >= length) continue;
+                double cost = graph.getCost(vertex, graph.getNeighbor(vertex, d), d);
+                if(cost < costs[i]) {
+                    crossings[i] = d;
+                    costs[i] = cost;
+                }
+            }
+        }
+        boolean[] transitions = new boolean[length];
+        for(int entrance = 0; entrance < length; ) {
+            int end = entrance + 1;
+            while(end < length && costs[end] == costs[entrance]) end++;
+            for(int w = entrance; w < end; w += WINDOW) transitions[(w + Math.min(w + WINDOW, end) - 1) / 2] = true;
+            entrance = end;
+        }
+
+        boolean changed = false;
+        for(int i = 0; i < length; i++) {
+            int slot = borderSlots[border] + i;
+            if(placed[slot] == transitions[i] && (!placed[slot] || partnerDirections[2*slot] == crossings[i])) continue;
+            changed = true;
+            placed[slot] = transitions[i];
+            int d = crossings[i];
+            nodeVertices[2*slot] = first + i*step;
+            nodeVertices[2*slot + 1] = graph.getNeighbor(nodeVertices[2*slot], d);
+            partnerDirections[2*slot] = d;
+            partnerDirections[2*slot + 1] = graph.getDirection(-graph.getLineOffset(d), -graph.getColumnOffset(d));
+        }
+        return changed;
+    }
+
+    /**
+     * Lists the nodes of a cluster whose transitions are placed, and numbers them inside the cluster.
+     *
+     * @param cluster the cluster
+     */
+    private void indexCluster(int cluster) {
+        int[] candidates = clusterCandidates[cluster];
+        int[] nodes = new int[candidates.length];
+        int k = 0;
+        for(int node : candidates) {
+            if(!placed[node / 2]) continue;
+            nodeIndexes[node] = k;
+            nodes[k++] = node;
+        }
+        clusterNodes[cluster] = Arrays.copyOf(nodes, k);
+    }
+
+    /**
+     * Computes the costs of the edges between the nodes of a cluster, with one search inside the cluster per node.
+     *
+     * @param cluster the cluster
+     */
+    private void computeCluster(int cluster) {
+        int[] nodes = clusterNodes[cluster];
+        int k = nodes.length;
+        double[] costs = new double[k*k];
+        LocalSearch search = new LocalSearch(this);
+        for(int i = 0; i < k; i++) {
+            search.run(nodeVertices[nodes[i]]);
+            for(int j = 0; j < k; j++) costs[i*k + j] = search.getTimeFromSource(nodeVertices[nodes[j]]);
+        }
+        intraCosts[cluster] = costs;
+    }
+
+    /**
+     * Updates the abstraction after a change of weight of a vertex: the transitions of the borders of its cluster
+     * are placed again, and the edges inside its cluster (and inside the clusters across the borders whose
+     * transitions have moved) are recomputed.
+     * The costs of the graph must be up to date (see {@link WeightedGraph#computeCosts()}).
+     *
+     * @param n the vertex whose weight has changed
+     */
+    public void update(int n) {
+        final int cluster = getCluster(n);
+        boolean[] changed = new boolean[clusterNodes.length];
+        changed[cluster] = true;
+        for(int b = 0; b < borderLengths.length; b++) {
+            int first = nodeClusters[2*borderSlots[b]];
+            int second = nodeClusters[2*borderSlots[b] + 1];
+            if((first == cluster || second == cluster) && placeTransitions(b)) {
+                changed[first] = true;
+                changed[second] = true;
+            }
+        }
+        for(int c = 0; c < changed.length; c++) {
+            if(!changed[c]) continue;
+            indexCluster(c);
+            computeCluster(c);
+        }
+    }
+
+    /**
+     * @return the graph of this abstraction
+     */
+    public WeightedGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return the length of the side of a cluster
+     */
+    public int getClusterSize() {
+        return clusterSize;
+    }
+
+    /**
+     * @param n a vertex of the graph
+     * @return the cluster containing the vertex {@code n}
+     */
+    public int getCluster(int n) {
+        int columns = graph.getColumns();
+        return (n / columns / clusterSize) * clusterColumns + (n % columns) / clusterSize;
+    }
+
+    /**
+     * @return the number of node identifiers of the abstract graph (two per border cell), the nodes in use being
+     * the nodes of the clusters (see {@link #getClusterNodes(int)})
+     */
+    public int getNodes() {
+        return nodeVertices.length;
+    }
+
+    /**
+     * @param cluster a cluster
+     * @return the nodes of the cluster (the vertices of its transitions)
+     */
+    public int[] getClusterNodes(int cluster) {
+        return clusterNodes[cluster];
+    }
+
+    /**
+     * @param node a node
+     * @return the vertex of the graph of the node
+     */
+    public int getVertex(int node) {
+        return nodeVertices[node];
+    }
+
+    /**
+     * @param node a node
+     * @return the cluster of the node
+     */
+    public int getNodeCluster(int node) {
+        return nodeClusters[node];
+    }
+
+    /**
+     * @param node a node
+     * @return the node on the other side of the transition of the node
+     */
+    public int getPartner(int node) {
+        return partners[node];
+    }
+
+    /**
+     * @param node a node
+     * @return the cost of the edge between the node and its partner (see {@link #getPartner(int)})
+     */
+    public double getPartnerCost(int node) {
+        return graph.getCost(nodeVertices[node], nodeVertices[partners[node]], partnerDirections[node]);
+    }
+
+    /**
+     * @param node a node
+     * @param other another node of the same cluster
+     * @return the cost of the shortest path between both nodes staying inside their cluster
+     */
+    public double getIntraCost(int node, int other) {
+        int k = clusterNodes[nodeClusters[node]].length;
+        return intraCosts[nodeClusters[node]][nodeIndexes[node]*k + nodeIndexes[other]];
+    }
+
+    /**
+     * A Dijkstra search restricted to the cluster of its source vertex, using arrays indexed inside the cluster.
+     * A search is not thread-safe, and should be reused for several searches of the same thread.
+     */
+    public static class LocalSearch {
+        private final ClusterAbstraction abstraction;
+        private final WeightedGraph graph;
+        private final double[] timeFromSource;
+        private final int[] previous;
+        private final IndexedMinHeap queue;
+        private int firstLine, firstColumn, lastLine, lastColumn;
+
+        /**
+         * Constructs a {@link LocalSearch} for the clusters of an abstraction.
+         *
+         * @param abstraction the abstraction
+         */
+        public LocalSearch(ClusterAbstraction abstraction) {
+            this.abstraction = abstraction;
+            this.graph = abstraction.graph;
+            int area = abstraction.clusterSize * abstraction.clusterSize;
+            this.timeFromSource = new double[area];
+            this.previous = new int[area];
+            this.queue = new IndexedMinHeap(area);
+        }
+
+        /**
+         * Runs the search from a vertex over its whole cluster.
+         *
+         * @param source the vertex to search from
+         */
+        public void run(int source) {
+            run(source, -1);
+        }
+
+        /**
+         * Runs the search from a vertex inside its cluster, until the target vertex is settled.
+         *
+         * @param source the vertex to search from
+         * @param target the vertex of the cluster to reach, or {@code -1} to search the whole cluster
+         */
+        public void run(int source, int target) {
+            final int columns = graph.getColumns();
+            final int size = abstraction.clusterSize;
+            firstLine = (source / columns) / size * size;
+            firstColumn = (source % columns) / size * size;
+            lastLine = Math.min(firstLine + size, graph.getLines()) - 1;
+            lastColumn = Math.min(firstColumn + size, columns) - 1;
+            Arrays.fill(timeFromSource, Double.POSITIVE_INFINITY);
+            Arrays.fill(previous, -1);
+            queue.clear();
+
+            timeFromSource[local(source)] = 0.0;
+            queue.push(local(source), 0.0);
+            while(!queue.isEmpty()) {
+                int l = queue.poll();
+                int u = global(l);
+                if(u == target) break;
+                for(int d = 0; d < graph.getDirections(); d++) {
+                    int neighbor = graph.getNeighbor(u, d);
+                    if(neighbor < 0 || !isInside(neighbor)) continue;
+                    int ln = local(neighbor);
+                    double tentative = timeFromSource[l] + graph.getCost(u, neighbor, d);
+                    if(tentative < timeFromSource[ln]) {
+                        timeFromSource[ln] = tentative;
+                        previous[ln] = u;
+                        queue.push(ln, tentative);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @param n a vertex of the graph
+         * @return whether the vertex {@code n} is in the cluster of the last search
+         */
+        public boolean isInside(int n) {
+            int line = n / graph.getColumns();
+            int col = n % graph.getColumns();
+            return line >= firstLine && line <= lastLine && col >= firstColumn && col <= lastColumn;
+        }
+
+        /**
+         * @param n a vertex of the cluster of the last search
+         * @return the cost of the shortest path from the source to {@code n} inside the cluster
+         */
+        public double getTimeFromSource(int n) {
+            return timeFromSource[local(n)];
+        }
+
+        /**
+         * @param n a vertex of the cluster of the last search
+         * @return the vertex before {@code n} on the shortest path from the source, or {@code -1} for the source
+         */
+        public int getPrevious(int n) {
+            return previous[local(n)];
+        }
+
+        /**
+         * @param n a vertex of the cluster
+         * @return the index of the vertex inside the cluster
+         */
+        private int local(int n) {
+            final int columns = graph.getColumns();
+            return (n / columns - firstLine) * abstraction.clusterSize + (n % columns - firstColumn);
+        }
+
+        /**
+         * @param l an index inside the cluster
+         * @return the vertex of the graph at this index
+         */
+        private int global(int l) {
+            final int size = abstraction.clusterSize;
+            return (firstLine + l / size) * graph.getColumns() + firstColumn + l % size;
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package main.instances;
+
+import main.model.WeightedGraph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A contraction hierarchy of a {@link WeightedGraph}, used by {@link ContractionHierarchyInstance} to answer
+ * shortest path queries on a static map much faster than a search on the graph itself.
+ * <p>
+ * Vertices are contracted one by one (the order is their <i>rank</i>): contracting a vertex removes it from the graph
+ * and adds a <i>shortcut</i> between two of its neighbors whenever the path through it is the only shortest path between them
+ * (which is checked by a local Dijkstra search, the <i>witness search</i>). Vertices are contracted in the order given
+ * by their edge difference (shortcuts added minus edges removed) plus their number of contracted neighbors,
+ * which is lazily updated.
+ * <p>
+ * The hierarchy keeps, for each vertex, its <i>upward</i> edges (to vertices of higher rank) in arrays:
+ * a shortcut remembers the vertex it bypasses so that it can be unpacked into the edges of the graph.
+ * As edges are symmetric, upward edges are used by both the forward and the backward searches of a query.
+ * A hierarchy can be saved to a file and loaded back for the same graph (see {@link #save(File)} and {@link #load(File, WeightedGraph)}).
+ */
+public class ContractionHierarchy {
+    private static final int MAGIC = 0x43484D31; //CHM1
+    private static final int CONTRACTION_SETTLED_LIMIT = 100; //vertices settled by a witness search when contracting
+    private static final int PRIORITY_SETTLED_LIMIT = 5; //vertices settled by a witness search when computing a priority
+
+    private final int lines;
+    private final int columns;
+    private final long checksum;
+    private final int[] ranks;
+    private final int[] firstEdges;
+    private final int[] targets;
+    private final double[] weights;
+    private final int[] middles;
+
+    /**
+     * Constructs a {@link ContractionHierarchy} from its arrays.
+     *
+     * @param lines the number of lines of the graph
+     * @param columns the number of columns of the graph
+     * @param checksum the checksum of the weights of the graph (see {@link #checksum(WeightedGraph)})
+     * @param ranks the rank of each vertex
+     * @param firstEdges the index of the first upward edge of each vertex (and the number of edges at the end)
+     * @param targets the target of each edge
+     * @param weights the weight of each edge
+     * @param middles the vertex bypassed by each edge, or {@code -1} if the edge is an edge of the graph
+     */
+    private ContractionHierarchy(int lines, int columns, long checksum, int[] ranks, int[] firstEdges,
+                                 int[] targets, double[] weights, int[] middles) {
+        this.lines = lines;
+        this.columns = columns;
+        this.checksum = checksum;
+        this.ranks = ranks;
+        this.firstEdges = firstEdges;
+        this.targets = targets;
+        this.weights = weights;
+        this.middles = middles;
+    }
+
+    /**
+     * @return the number of vertices of the hierarchy
+     */
+    public int size() {
+        return ranks.length;
+    }
+
+    /**
+     * @param n the vertex
+     * @return the rank of the vertex {@code n} (the order in which it has been contracted)
+     */
+    public int getRank(int n) {
+        return ranks[n];
+    }
+
+    /**
+     * @param n the vertex
+     * @return the index of the first upward edge of the vertex {@code n}
+     */
+    public int getFirstEdge(int n) {
+        return firstEdges[n];
+    }
+
+    /**
+     * @param n the vertex
+     * @return the index following the last upward edge of the vertex {@code n}
+     */
+    public int getLastEdge(int n) {
+        return firstEdges[n+1];
+    }
+
+    /**
+     * @param e the edge
+     * @return the target (of higher rank) of the edge {@code e}
+     */
+    public int getTarget(int e) {
+        return targets[e];
+    }
+
+    /**
+     * @param e the edge
+     * @return the weight of the edge {@code e}
+     */
+    public double getWeight(int e) {
+        return weights[e];
+    }
+
+    /**
+     * @param e the edge
+     * @return the vertex bypassed by the edge {@code e} if it is a shortcut, or {@code -1} if it is an edge of the graph
+     */
+    public int getMiddle(int e) {
+        return middles[e];
+    }
+
+    /**
+     * @return the number of shortcuts of the hierarchy
+     */
+    public int getShortcuts() {
+        int shortcuts = 0;
+        for(int middle : middles) {
+            if(middle >= 0) shortcuts++;
+        }
+        return shortcuts;
+    }
+
+    /**
+     * Finds the edge between two vertices of the hierarchy.
+     *
+     * @param u a vertex
+     * @param w another vertex
+     * @return the edge between {@code u} and {@code w} (stored at the vertex of lower rank), or {@code -1} if there is none
+     */
+    public int findEdge(int u, int w) {
+        int low = ranks[u] < ranks[w] ? u : w;
+        int high = low == u ? w : u;
+        for(int e = firstEdges[low]; e < firstEdges[low+1]; e++) {
+            if(targets[e] == high) return e;
+        }
+        return -1;
+    }
+
+    /**
+     * Builds the contraction hierarchy of a graph.
+     *
+     * @param graph the graph
+     * @return the contraction hierarchy of {@code graph}
+     */
+    public static ContractionHierarchy build(WeightedGraph graph) {
+        return new Contractor(graph).contract();
+    }
+
+    /**
+     * Saves this hierarchy to a file.
+     *
+     * @param file the file to write
+     * @throws IOException if an error occurs during writing
+     */
+    public void save(File file) throws IOException {
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(lines);
+            out.writeInt(columns);
+            out.writeLong(checksum);
+            out.writeInt(targets.length);
+            for(int rank : ranks) out.writeInt(rank);
+            for(int first : firstEdges) out.writeInt(first);
+            for(int e = 0; e < targets.length; e++) {
+                out.writeInt(targets[e]);
+                out.writeDouble(weights[e]);
+                out.writeInt(middles[e]);
+            }
+        }
+    }
+
+    /**
+     * Loads a hierarchy saved by {@link #save(File)}.
+     *
+     * @param file the file to read
+     * @param graph the graph the hierarchy has been built for
+     * @return the hierarchy read
+     * @throws IOException if an error occurs during reading
+     * @throws IllegalArgumentException if the file is not a hierarchy of this graph
+     */
+    public static ContractionHierarchy load(File file, WeightedGraph graph) throws IOException {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if(in.readInt() != MAGIC) throw new IllegalArgumentException("Cannot read this hierarchy : invalid file");
+            int lines = in.readInt();
+            int columns = in.readInt();
+            long checksum = in.readLong();
+            if(lines != graph.getLines() || columns != graph.getColumns() || checksum != checksum(graph))
+                throw new IllegalArgumentException("Cannot read this hierarchy : it has been built for another map");
+            int m = in.readInt();
+            int n = lines * columns;
+            int[] ranks = new int[n];
+            int[] firstEdges = new int[n+1];
+            int[] targets = new int[m];
+            double[] weights = new double[m];
+            int[] middles = new int[m];
+            for(int i = 0; i < n; i++) ranks[i] = in.readInt();
+            for(int i = 0; i <= n; i++) firstEdges[i] = in.readInt();
+            for(int e = 0; e < m; e++) {
+                targets[e] = in.readInt();
+                weights[e] = in.readDouble();
+                middles[e] = in.readInt();
+            }
+            return new ContractionHierarchy(lines, columns, checksum, ranks, firstEdges, targets, weights, middles);
+        }
+    }
+
+    /**
+     * Computes a checksum of the weights and connectivity of a graph, so that a hierarchy is never used with another map.
+     *
+     * @param graph the graph
+     * @return the checksum of {@code graph}
+     */
+    private static long checksum(WeightedGraph graph) {
+        long hash = graph.isDiagonal() ? 1 : 0;
+        for(int n = 0; n < graph.size(); n++) hash = 31*hash + graph.getWeight(n);
+        return hash;
+    }
+
+    /**
+     * Contracts the vertices of a graph, keeping the remaining graph in growable adjacency arrays.
+     */
+    private static class Contractor {
+        private final WeightedGraph graph;
+        private final int[][] adjacent;
+        private final double[][] adjacentWeights;
+        private final int[][] adjacentMiddles;
+        private final int[] degrees;
+        private final int[] deletedNeighbors;
+        private final boolean[] contracted;
+        private final SearchContext witness;
+        private final int[] targetStamps;
+        private int targetStamp;
+
+        /**
+         * Constructs a {@link Contractor} for the specified graph, initialized with the edges of the graph.
+         *
+         * @param graph the graph to contract
+         */
+        private Contractor(WeightedGraph graph) {
+            this.graph = graph;
+            int n = graph.size();
+            this.adjacent = new int[n][];
+            this.adjacentWeights = new double[n][];
+            this.adjacentMiddles = new int[n][];
+            this.degrees = new int[n];
+            this.deletedNeighbors = new int[n];
+            this.contracted = new boolean[n];
+            this.witness = new SearchContext(n);
+            this.targetStamps = new int[n];
+            for(int u = 0; u < n; u++) {
+                adjacent[u] = new int[graph.getDirections()];
+                adjacentWeights[u] = new double[graph.getDirections()];
+                adjacentMiddles[u] = new int[graph.getDirections()];
+                for(int d = 0; d < graph.getDirections(); d++) {
+                    int v = graph.getNeighbor(u, d);
+                    if(v >= 0) addEdge(u, v, graph.getCost(u, v, d), -1);
+                }
+            }
+        }
+
+        /**
+         * Contracts all vertices and builds the hierarchy.
+         *
+         * @return the contraction hierarchy of the graph
+         */
+        private ContractionHierarchy contract() {
+            final int n = graph.size();
+            int[] ranks = new int[n];
+            int[][] upTargets = new int[n][];
+            double[][] upWeights = new double[n][];
+            int[][] upMiddles = new int[n][];
+
+            IndexedMinHeap queue = new IndexedMinHeap(n);
+            for(int v = 0; v < n; v++) queue.push(v, priority(v));
+
+            int rank = 0;
+            while(!queue.isEmpty()) {
+                int v = queue.poll();
+                double p = priority(v);
+                if(!queue.isEmpty() && p > queue.peekKey()) { //lazy update
+                    queue.push(v, p);
+                    continue;
+                }
+                if(rank%10000 == 0) System.out.println("contracting..." +
+                        " ~" + (double)rank/(double)n*100.0 + "% done");
+
+                shortcuts(v, true);
+                upTargets[v] = Arrays.copyOf(adjacent[v], degrees[v]);
+                upWeights[v] = Arrays.copyOf(adjacentWeights[v], degrees[v]);
+                upMiddles[v] = Arrays.copyOf(adjacentMiddles[v], degrees[v]);
+                contracted[v] = true;
+                ranks[v] = rank++;
+                for(int k = 0; k < degrees[v]; k++) {
+                    int u = adjacent[v][k];
+                    removeEdge(u, v);
+                    deletedNeighbors[u]++;
+                }
+                for(int k = 0; k < degrees[v]; k++) queue.push(adjacent[v][k], priority(adjacent[v][k]));
+            }
+
+            int[] firstEdges = new int[n+1];
+            for(int v = 0; v < n; v++) firstEdges[v+1] = firstEdges[v] + upTargets[v].length;
+            int m = firstEdges[n];
+            int[] targets = new int[m];
+            double[] weights = new double[m];
+            int[] middles = new int[m];
+            for(int v = 0; v < n; v++) {
+                System.arraycopy(upTargets[v], 0, targets, firstEdges[v], upTargets[v].length);
+                System.arraycopy(upWeights[v], 0, weights, firstEdges[v], upWeights[v].length);
+                System.arraycopy(upMiddles[v], 0, middles, firstEdges[v], upMiddles[v].length);
+            }
+            return new ContractionHierarchy(graph.getLines(), graph.getColumns(), checksum(graph),
+                    ranks, firstEdges, targets, weights, middles);
+        }
+
+        /**
+         * @param v a vertex not contracted yet
+         * @return the priority of the vertex {@code v} (the lower, the sooner it is contracted)
+         */
+        private double priority(int v) {
+            return shortcuts(v, false) - degrees[v] + deletedNeighbors[v];
+        }
+
+        /**
+         * Finds (and adds, if {@code apply} is set) the shortcuts needed to contract the vertex {@code v}.
+         *
+         * @param v a vertex not contracted yet
+         * @param apply whether the shortcuts should be added to the graph
+         * @return the number of shortcuts needed
+         */
+        private int shortcuts(int v, boolean apply) {
+            int count = 0;
+            int degree = degrees[v];
+            int[] neighbors = adjacent[v]; //the edges of v are not changed by its own shortcuts
+            double[] toNeighbors = adjacentWeights[v];
+
+            for(int i = 0; i < degree - 1; i++) {
+                int u = neighbors[i];
+                double maxToNeighbor = 0;
+                for(int j = i + 1; j < degree; j++) maxToNeighbor = Math.max(maxToNeighbor, toNeighbors[j]);
+                witnessSearch(u, v, neighbors, i + 1, degree, toNeighbors[i] + maxToNeighbor, apply ? CONTRACTION_SETTLED_LIMIT : PRIORITY_SETTLED_LIMIT);
+                for(int j = i + 1; j < degree; j++) {
+                    int w = neighbors[j];
+                    double via = toNeighbors[i] + toNeighbors[j];
+                    if(witness.getTimeFromSource(w) > via) {
+                        count++;
+                        if(apply) {
+                            addEdge(u, w, via, v);
+                            addEdge(w, u, via, v);
+                        }
+                    }
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Runs a Dijkstra search from {@code source} on the remaining graph without the vertex {@code excluded},
+         * until all the targets are settled, every vertex closer than {@code maxTime} is settled,
+         * or {@code limit} vertices are settled.
+         *
+         * @param source the vertex to search from
+         * @param excluded the vertex being contracted
+         * @param targets an array containing the vertices a witness is looked for
+         * @param from the index of the first target in {@code targets}
+         * @param to the index following the last target in {@code targets}
+         * @param maxTime the maximum time from source of interest
+         * @param limit the maximum number of vertices settled
+         */
+        private void witnessSearch(int source, int excluded, int[] targets, int from, int to, double maxTime, int limit) {
+            witness.reset();
+            IndexedMinHeap queue = witness.getQueue();
+            witness.setTimeFromSource(source, 0);
+            queue.push(source, 0);
+            targetStamp++;
+            for(int j = from; j < to; j++) targetStamps[targets[j]] = targetStamp;
+            int remaining = to - from;
+            int settled = 0;
+            while(!queue.isEmpty() && settled < limit && remaining > 0) {
+                if(queue.peekKey() > maxTime) break;
+                int u = queue.poll();
+                if(targetStamps[u] == targetStamp) remaining--;
+                witness.close(u);
+                settled++;
+                double time = witness.getTimeFromSource(u);
+                for(int k = 0; k < degrees[u]; k++) {
+                    int w = adjacent[u][k];
+                    if(w == excluded || witness.isClosed(w)) continue;
+                    double tentative = time + adjacentWeights[u][k];
+                    if(tentative <= maxTime && tentative < witness.getTimeFromSource(w)) {
+                        witness.setTimeFromSource(w, tentative);
+                        queue.push(w, tentative);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Adds the edge from {@code u} to {@code w}, or decreases its weight if it already exists.
+         *
+         * @param u a vertex
+         * @param w another vertex
+         * @param weight the weight of the edge
+         * @param middle the vertex bypassed by the edge, or {@code -1} if the edge is an edge of the graph
+         */
+        private void addEdge(int u, int w, double weight, int middle) {
+            for(int k = 0; k < degrees[u]; k++) {
+                if(adjacent[u][k] == w) {
+                    if(weight < adjacentWeights[u][k]) {
+                        adjacentWeights[u][k] = weight;
+                        adjacentMiddles[u][k] = middle;
+                    }
+                    return;
+                }
+            }
+            if(degrees[u] == adjacent[u].length) {
+                int capacity = Math.max(4, 2*degrees[u]);
+                adjacent[u] = Arrays.copyOf(adjacent[u], capacity);
+                adjacentWeights[u] = Arrays.copyOf(adjacentWeights[u], capacity);
+                adjacentMiddles[u] = Arrays.copyOf(adjacentMiddles[u], capacity);
+            }
+            adjacent[u][degrees[u]] = w;
+            adjacentWeights[u][degrees[u]] = weight;
+            adjacentMiddles[u][degrees[u]] = middle;
+            degrees[u]++;
+        }
+
+        /**
+         * Removes the edge from {@code u} to {@code w}.
+         *
+         * @param u a vertex
+         * @param w another vertex
+         */
+        private void removeEdge(int u, int w) {
+            for(int k = 0; k < degrees[u]; k++) {
+                if(adjacent[u][k] == w) {
+                    int last = --degrees[u];
+                    adjacent[u][k] = adjacent[u][last];
+                    adjacentWeights[u][k] = adjacentWeights[u][last];
+                    adjacentMiddles[u][k] = adjacentMiddles[u][last];
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package main.instances;
+
+import main.model.WeightedGraph;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An implementation of the contraction hierarchies query for finding the shortest path in a weighted graph,
+ * using a {@link ContractionHierarchy} built (or loaded) once for the graph.
+ * <p>
+ * A bidirectional Dijkstra search only follows upward edges (to vertices of higher rank) from both the start and the end vertex.
+ * Each side stops once its smallest key is at least the cost of the best path found so far, which is where both searches meet.
+ * The shortcuts of the path found are then unpacked, so the path is made of the vertices of the graph,
+ * as for the other {@link PathFinderInstance}s. So are the shortcuts of a partial path, retrieved in the search tree
+ * of the start vertex when the search is stopped by its budget.
+ */
+public class ContractionHierarchyInstance extends PathFinderInstance {
+    private final ContractionHierarchy hierarchy;
+    private final ThreadLocal<SearchContext> backwardContexts;
+
+    /**
+     * Constructs a {@link ContractionHierarchyInstance} for the specified graph and its hierarchy.
+     *
+     * @param graph the {@link WeightedGraph} to operate on
+     * @param hierarchy the {@link ContractionHierarchy} of {@code graph}
+     */
+    public ContractionHierarchyInstance(WeightedGraph graph, ContractionHierarchy hierarchy) {
+        super(graph);
+        this.hierarchy = hierarchy;
+        this.backwardContexts = ThreadLocal.withInitial(() -> new SearchContext(graph.size()));
+    }
+
+    /**
+     * Performs the upward bidirectional search in the hierarchy to find the shortest path between the start and end vertices.
+     *
+     * @param start the starting vertex
+     * @param end the ending vertex
+     * @param verbose whether logs should be output
+     * @return the total cost of the shortest path, or {@link Double#POSITIVE_INFINITY} if the end vertex is unreachable
+     */
+    @Override
+    public double searchPath(WeightedGraph.Vertex start, WeightedGraph.Vertex end, boolean verbose) {
+        SearchContext forward = newSearch();
+        SearchContext backward = backwardContexts.get();
+        backward.reset();
+        SearchTrace trace = forward.getTrace();
+        IndexedMinHeap forwardQueue = forward.getQueue();
+        IndexedMinHeap backwardQueue = backward.getQueue();
+
+        final int s = start.getN();
+        final int t = end.getN();
+        forward.setTimeFromSource(s, 0.0);
+        forwardQueue.push(s, 0.0);
+        backward.setTimeFromSource(t, 0.0);
+        backwardQueue.push(t, 0.0);
+
+        double mu = Double.POSITIVE_INFINITY;
+        int meet = -1;
+        while(true) {
+            boolean forwardActive = !forwardQueue.isEmpty() && forwardQueue.peekKey() < mu;
+            boolean backwardActive = !backwardQueue.isEmpty() && backwardQueue.peekKey() < mu;
+            if(!forwardActive && !backwardActive) break;
+            if(forward.isOverBudget()) break; //the budget counts the selections of both searches
+
+            boolean isForward = forwardActive && (!backwardActive || forwardQueue.peekKey() <= backwardQueue.peekKey());
+            SearchContext current = isForward ? forward : backward;
+            SearchContext other = isForward ? backward : forward;
+            IndexedMinHeap queue = isForward ? forwardQueue : backwardQueue;
+
+            int u = queue.poll();
+            trace.record(u, current.getPrevious(u));
+            if(verbose) System.out.println("selecting the vertex with the minimum key (" + (isForward ? "forward" : "backward") + "): " + snapshot(u, current));
+            current.close(u);
+
+            double currentTime = current.getTimeFromSource(u);
+            double through = currentTime + other.getTimeFromSource(u);
+            if(through < mu) {
+                if(verbose) System.out.println("both searches meet at " + u + " with cost: " + through);
+                mu = through;
+                meet = u;
+            }
+            for(int e = hierarchy.getFirstEdge(u); e < hierarchy.getLastEdge(u); e++) {
+                int w = hierarchy.getTarget(e);
+                double tentative = currentTime + hierarchy.getWeight(e);
+                if(tentative < current.getTimeFromSource(w)) {
+                    current.setTimeFromSource(w, tentative);
+                    current.setPrevious(w, u);
+                    queue.push(w, tentative);
+                }
+            }
+        }
+
+        if(forward.getStop() != null) {
+            if(verbose) System.out.println("search stopped: budget spent");
+            return Double.POSITIVE_INFINITY;
+        }
+        if(meet < 0) {
+            if(verbose) System.out.println("no path found: the end vertex is unreachable");
+            return Double.POSITIVE_INFINITY;
+        }
+        return retrievePath(s, t, meet, forward, backward, verbose);
+    }
+
+    /**
+     * Reconstructs the shortest path from the start to the end vertex, joining both searches at the meeting vertex
+     * and unpacking the shortcuts into the edges of the graph.
+     *
+     * @param start the starting vertex
+     * @param end the ending vertex
+     * @param meet the vertex where both searches meet on the shortest path
+     * @param forward the context of the search from the start vertex
+     * @param backward the context of the search from the end vertex
+     * @param verbose whether logs should be output
+     * @return the total cost of the path, summed over the edges of the graph
+     */
+    private double retrievePath(int start, int end, int meet, SearchContext forward, SearchContext backward, boolean verbose) {
+        List<Integer> toEnd = new ArrayList<>(); //from the meeting vertex to the end (in the backward search tree)
+        for(int n = meet; n != end; n = backward.getPrevious(n)) toEnd.add(n);
+        toEnd.add(end);
+        List<Integer> toStart = new ArrayList<>(); //from the meeting vertex to the beginning (in the forward search tree)
+        for(int n = meet; n != start; n = forward.getPrevious(n)) toStart.add(n);
+        toStart.add(start);
+
+        List<Integer> vertices = new ArrayList<>(); //from the end to the beginning
+        vertices.add(end);
+        for(int k = toEnd.size() - 1; k > 0; k--) unpack(toEnd.get(k), toEnd.get(k - 1), vertices);
+        for(int k = 0; k + 1 < toStart.size(); k++) unpack(toStart.get(k), toStart.get(k + 1), vertices);
+        return buildPath(vertices, forward, verbose);
+    }
+
+    /**
+     * Reconstructs the path from the start vertex to a vertex selected by the search from the start vertex,
+     * unpacking the shortcuts of its search tree into the edges of the graph.
+     *
+     * @param start the starting vertex
+     * @param end the vertex selected
+     * @param context the context of the search from the start vertex
+     * @param verbose whether logs should be output
+     */
+    @Override
+    protected void retrievePath(int start, int end, SearchContext context, boolean verbose) {
+        List<Integer> vertices = new ArrayList<>(); //from the end to the beginning
+        vertices.add(end);
+        for(int n = end; n != start; n = context.getPrevious(n)) unpack(n, context.getPrevious(n), vertices);
+        buildPath(vertices, context, verbose);
+    }
+
+    /**
+     * Builds the path of a search from its vertices.
+     *
+     * @param vertices the vertices of the path, from the end to the beginning
+     * @param context the context of the search, holding the path
+     * @param verbose whether logs should be output
+     * @return the total cost of the path, summed over the edges of the graph
+     */
+    private double buildPath(List<Integer> vertices, SearchContext context, boolean verbose) {
+        if(verbose) System.out.println("\n\nfinal path (from the end to the beginning):");
+        List<WeightedGraph.Vertex> path = context.getPath();
+        final int columns = graph.getColumns();
+        double cost = 0.0;
+        for(int k = vertices.size() - 1; k > 0; k--) { //summed from the beginning, as a search on the graph would
+            int from = vertices.get(k);
+            int to = vertices.get(k - 1);
+            int d = graph.getDirection(to / columns - from / columns, to % columns - from % columns);
+            cost += graph.getCost(from, to, d);
+        }
+        for(int k = 0; k < vertices.size(); k++) {
+            WeightedGraph.Vertex v = graph.getVertex(vertices.get(k));
+            if(k + 1 < vertices.size()) v.setPrevious(graph.getVertex(vertices.get(k + 1)));
+            if(verbose && k + 1 < vertices.size()) System.out.println(v);
+            path.add(v);
+        }
+        return cost;
+    }
+
+    /**
+     * Unpacks the edge of the hierarchy from {@code from} to {@code to} into edges of the graph,
+     * and appends the vertices following {@code from} (up to {@code to}, included) to a list.
+     *
+     * @param from the first vertex of the edge
+     * @param to the second vertex of the edge
+     * @param vertices the list of vertices to append to
+     */
+    private void unpack(int from, int to, List<Integer> vertices) {
+        List<Integer> stack = new ArrayList<>(); //vertices still to reach, the next one at the end
+        stack.add(to);
+        int current = from;
+        while(!stack.isEmpty()) {
+            int target = stack.get(stack.size() - 1);
+            int middle = hierarchy.getMiddle(hierarchy.findEdge(current, target));
+            if(middle < 0) {
+                vertices.add(target);
+                current = target;
+                stack.remove(stack.size() - 1);
+            } else {
+                stack.add(middle);
+            }
+        }
+    }
+}
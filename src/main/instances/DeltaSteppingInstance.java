@@ -0,0 +1,308 @@
+package main.instances;
+
+import main.model.WeightedGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * An implementation of the delta-stepping algorithm for finding the shortest path in a weighted graph,
+ * relaxing edges in parallel on a {@link ForkJoinPool}.
+ * <p>
+ * Vertices are kept in buckets of width {@code delta} (the cost of an edge between two vertices of average weight).
+ * The vertices of the first non-empty bucket are all expanded at once: their <i>light</i> edges (of cost at most
+ * {@code delta}) are relaxed in parallel, again and again while vertices come back into this bucket,
+ * then their <i>heavy</i> edges are relaxed in parallel. Times from source are stored as the bits of
+ * {@code double}s in an {@link AtomicLongArray} and only decreased by compare-and-set, without locks.
+ * The search stops once the bucket of the end vertex has been expanded.
+ * <p>
+ * The costs found are the same as {@link DijkstraInstance}, but the path may be another shortest path.
+ * Each successful compare-and-set is reported with the vertex relaxed from, and the preceding vertex of a vertex is
+ * the one its final time from source was set from (a time from source only decreases, so a single relaxation sets it).
+ * The trace holds the vertices expanded, bucket after bucket.
+ * <p>
+ * The budget of the search is checked before each vertex is expanded. If it is spent, the vertices of the buckets
+ * already expanded (whose times from source are final) are closed in the context of the search, with their preceding
+ * vertex, so that a partial path can be retrieved.
+ */
+public class DeltaSteppingInstance extends PathFinderInstance {
+    private static final long INFINITY = Double.doubleToLongBits(Double.POSITIVE_INFINITY);
+
+    private final ForkJoinPool pool;
+    private final double delta;
+    private final int bucketCount;
+    private final ThreadLocal<State> states;
+
+    /**
+     * Constructs a {@link DeltaSteppingInstance} for the specified graph, using the common {@link ForkJoinPool}.
+     *
+     * @param graph the {@link WeightedGraph} to operate on
+     */
+    public DeltaSteppingInstance(WeightedGraph graph) {
+        this(graph, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a {@link DeltaSteppingInstance} for the specified graph and pool.
+     *
+     * @param graph the {@link WeightedGraph} to operate on
+     * @param pool the {@link ForkJoinPool} running the relaxations (its parallelism is the number of threads used)
+     */
+    public DeltaSteppingInstance(WeightedGraph graph, ForkJoinPool pool) {
+        super(graph);
+        this.pool = pool;
+        long total = 0;
+        for(int n = 0; n < graph.size(); n++) total += graph.getWeight(n);
+        double average = (double) total / Math.max(1, graph.size());
+        this.delta = average > 0 ? average : 1.0;
+        double maxCost = graph.getMaxWeight() * (graph.isDiagonal() ? Math.sqrt(2) : 1.0);
+        this.bucketCount = (int) Math.ceil(maxCost / delta) + 2;
+        this.states = ThreadLocal.withInitial(() -> new State(graph.size(), bucketCount));
+    }
+
+    /**
+     * @param time a time from source
+     * @return the bucket of this time from source, before the circular array
+     */
+    private int bucket(double time) {
+        return (int) (time / delta);
+    }
+
+    /**
+     * Performs the delta-stepping algorithm to find the shortest path between the start and end vertices.
+     *
+     * @param start the starting vertex
+     * @param end the ending vertex
+     * @param verbose whether logs should be output
+     * @return the total cost of the shortest path, or {@link Double#POSITIVE_INFINITY} if the end vertex is unreachable
+     */
+    @Override
+    public double searchPath(WeightedGraph.Vertex start, WeightedGraph.Vertex end, boolean verbose) {
+        SearchContext context = newSearch();
+        SearchTrace trace = context.getTrace();
+        State state = states.get();
+        state.reset();
+        final AtomicLongArray times = state.times;
+        final int e = end.getN();
+
+        times.set(start.getN(), Double.doubleToLongBits(0.0));
+        state.touch(start.getN());
+        state.add(0, start.getN());
+        for(int current = 0; !state.isEmpty(); current++) {
+            double toEnd = Double.longBitsToDouble(times.get(e));
+            if(toEnd != Double.POSITIVE_INFINITY && current > bucket(toEnd)) break;
+            if(state.isEmpty(current)) continue;
+            if(verbose) System.out.println("expanding the bucket [" + current*delta + ", " + (current+1)*delta + ")");
+
+            List<int[]> expanded = new ArrayList<>();
+            int[] frontier;
+            while((frontier = state.poll(current, this)).length > 0) {
+                for(int u : frontier) {
+                    if(context.isOverBudget()) {
+                        state.publish(current, start.getN(), context, this);
+                        if(verbose) System.out.println("search stopped: budget spent");
+                        return Double.POSITIVE_INFINITY;
+                    }
+                    trace.record(u, -1);
+                }
+                expanded.add(frontier);
+                state.distribute(relax(frontier, times, true), this);
+            }
+            state.distribute(relax(expanded.stream().flatMapToInt(IntStream::of).distinct().toArray(), times, false), this);
+        }
+
+        double time = Double.longBitsToDouble(times.get(e));
+        if(time == Double.POSITIVE_INFINITY) {
+            if(verbose) System.out.println("no path found: the end vertex is unreachable");
+            return Double.POSITIVE_INFINITY;
+        }
+        for(int n = e; n != start.getN(); n = context.getPrevious(n)) {
+            context.setTimeFromSource(n, Double.longBitsToDouble(times.get(n)));
+            context.setPrevious(n, state.previous[n]);
+        }
+        retrievePath(start.getN(), e, context, verbose);
+        return time;
+    }
+
+    /**
+     * Relaxes the light or heavy edges of vertices in parallel.
+     *
+     * @param vertices the vertices to expand
+     * @param times the times from source
+     * @param light whether the light edges (of cost at most {@code delta}) or the heavy edges should be relaxed
+     * @return the successful relaxations, as pairs of longs: the vertex whose time from source has decreased in the
+     * high half and the vertex it was relaxed from in the low half, then the bits of the new time from source
+     */
+    private long[] relax(int[] vertices, AtomicLongArray times, boolean light) {
+        return pool.submit(() -> IntStream.of(vertices).parallel().mapToObj(u -> {
+            double time = Double.longBitsToDouble(times.get(u));
+            long[] improved = new long[2*graph.getDirections()];
+            int count = 0;
+            for(int d = 0; d < graph.getDirections(); d++) {
+                int neighbor = graph.getNeighbor(u, d);
+                if(neighbor < 0) continue;
+                double cost = graph.getCost(u, neighbor, d);
+                if((cost <= delta) != light) continue;
+                long tentative = Double.doubleToLongBits(time + cost);
+                long old = times.get(neighbor);
+                while(tentative < old) { //positive doubles are ordered as their bits
+                    if(times.compareAndSet(neighbor, old, tentative)) {
+                        improved[count++] = (long) neighbor << 32 | u;
+                        improved[count++] = tentative;
+                        break;
+                    }
+                    old = times.get(neighbor);
+                }
+            }
+            return Arrays.copyOf(improved, count);
+        }).flatMapToLong(LongStream::of).toArray()).join();
+    }
+
+    /**
+     * The state of a search: the times from source, the preceding vertices and a circular array of buckets.
+     * Only the relaxations are run in parallel: the preceding vertices and the buckets are only used by the thread
+     * running the search.
+     */
+    private static class State {
+        private final AtomicLongArray times;
+        private final int[] previous;
+        private final int[] marks;
+        private int mark;
+        private int[] touched;
+        private int touchedCount;
+        private final int[][] buckets;
+        private final int[] sizes;
+        private int count;
+
+        /**
+         * Constructs the {@link State} of the searches of a thread.
+         *
+         * @param size the number of vertices of the graph
+         * @param bucketCount the number of buckets
+         */
+        private State(int size, int bucketCount) {
+            this.times = new AtomicLongArray(size);
+            for(int n = 0; n < size; n++) times.set(n, INFINITY);
+            this.previous = new int[size];
+            this.marks = new int[size];
+            this.touched = new int[16];
+            this.buckets = new int[bucketCount][4];
+            this.sizes = new int[bucketCount];
+        }
+
+        /**
+         * Resets the times from source of the vertices touched by the last search, and empties the buckets.
+         */
+        private void reset() {
+            for(int k = 0; k < touchedCount; k++) times.set(touched[k], INFINITY);
+            touchedCount = 0;
+            Arrays.fill(sizes, 0);
+            count = 0;
+        }
+
+        /**
+         * Remembers that the time from source of a vertex has been set.
+         *
+         * @param n the vertex
+         */
+        private void touch(int n) {
+            if(touchedCount == touched.length) touched = Arrays.copyOf(touched, 2*touchedCount);
+            touched[touchedCount++] = n;
+        }
+
+        /**
+         * @return whether all buckets are empty
+         */
+        private boolean isEmpty() {
+            return count == 0;
+        }
+
+        /**
+         * @param key the key of a bucket
+         * @return whether the bucket of this key is empty
+         */
+        private boolean isEmpty(int key) {
+            return sizes[key % sizes.length] == 0;
+        }
+
+        /**
+         * Adds a vertex to a bucket.
+         *
+         * @param key the key of the bucket
+         * @param n the vertex
+         */
+        private void add(int key, int n) {
+            int b = key % sizes.length;
+            if(sizes[b] == buckets[b].length) buckets[b] = Arrays.copyOf(buckets[b], 2*sizes[b]);
+            buckets[b][sizes[b]++] = n;
+            count++;
+        }
+
+        /**
+         * Empties a bucket.
+         *
+         * @param key the key of the bucket
+         * @param instance the search, giving the bucket of a time from source
+         * @return the vertices of the bucket that are still in it (without duplicates)
+         */
+        private int[] poll(int key, DeltaSteppingInstance instance) {
+            int b = key % sizes.length;
+            mark++;
+            int[] vertices = new int[sizes[b]];
+            int k = 0;
+            for(int j = 0; j < sizes[b]; j++) {
+                int n = buckets[b][j];
+                if(marks[n] == mark || instance.bucket(Double.longBitsToDouble(times.get(n))) != key) continue;
+                marks[n] = mark;
+                vertices[k++] = n;
+            }
+            count -= sizes[b];
+            sizes[b] = 0;
+            return Arrays.copyOf(vertices, k);
+        }
+
+        /**
+         * Closes the starting vertex and the vertices of the buckets before a bucket in the context of the search,
+         * with their time from source and preceding vertex (the preceding vertex of such a vertex is in these buckets too).
+         *
+         * @param key the key of the first bucket whose vertices are not closed
+         * @param start the starting vertex
+         * @param context the context of the search
+         * @param instance the search, giving the bucket of a time from source
+         */
+        private void publish(int key, int start, SearchContext context, DeltaSteppingInstance instance) {
+            for(int k = 0; k < touchedCount; k++) {
+                int n = touched[k];
+                double time = Double.longBitsToDouble(times.get(n));
+                if(context.isClosed(n) || (n != start && instance.bucket(time) >= key)) continue;
+                context.setTimeFromSource(n, time);
+                if(n != start) context.setPrevious(n, previous[n]);
+                context.close(n);
+            }
+        }
+
+        /**
+         * Adds the vertices whose time from source has decreased to the buckets of their new times from source,
+         * and records the vertex their new time from source was set from.
+         *
+         * @param relaxations the successful relaxations (see {@link DeltaSteppingInstance#relax(int[], AtomicLongArray, boolean)})
+         * @param instance the search, giving the bucket of a time from source
+         */
+        private void distribute(long[] relaxations, DeltaSteppingInstance instance) {
+            mark++;
+            for(int k = 0; k < relaxations.length; k += 2) {
+                int n = (int) (relaxations[k] >>> 32);
+                if(times.get(n) == relaxations[k + 1]) previous[n] = (int) relaxations[k];
+                if(marks[n] == mark) continue;
+                marks[n] = mark;
+                touch(n);
+                add(instance.bucket(Double.longBitsToDouble(times.get(n))), n);
+            }
+        }
+    }
+}
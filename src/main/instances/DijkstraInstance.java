@@ -2,8 +2,6 @@ package main.instances;
 
 import main.model.WeightedGraph;
 
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * An implementation of the Dijkstra algorithm for finding the shortest path in a {@link WeightedGraph}.
@@ -25,63 +23,63 @@ public class DijkstraInstance extends PathFinderInstance {
      * @param start the starting vertex
      * @param end the ending vertex
      * @param verbose whether logs should be output
-     * @return the total cost of the shortest path
+     * @return the total cost of the shortest path, or {@link Double#POSITIVE_INFINITY} if the end vertex is unreachable
      */
     @Override
     public double searchPath(WeightedGraph.Vertex start, WeightedGraph.Vertex end, boolean verbose) {
-        delays.clear();
-        path.clear();
+        SearchContext context = newSearch();
+        SearchTrace trace = context.getTrace();
 
-        List<WeightedGraph.Vertex> Q = new ArrayList<>();
-
-        for(WeightedGraph.Vertex v : graph.getVertices()) {
-            v.setTimeFromSource(Double.POSITIVE_INFINITY);
-            v.setPrevious(null);
-            Q.add(v);
-        }
-        start.setTimeFromSource(0);
+        final int size = graph.size();
+        context.setTimeFromSource(start.getN(), 0);
         int i = 0;
         //https://www.cs.cmu.edu/~15381-s19/recitations/rec2/rec2_sol.pdf
-        while(Q.contains(end)) {
+        while(!context.isClosed(end.getN()) && !context.isOverBudget()) {
             //Dijkstra is worse than A*, especially if the heuristic of A* is a good one
             if(i%10000 == 0) System.out.println("searching..." +
-                    " up to ~" + (1.0-(double)i/(double)this.graph.getVertices().size())*100.0 + "% remaining"); //max n
-            WeightedGraph.Vertex u = findMin(Q);
-            delays.put(i, u);
-            if(verbose) System.out.println("selecting the vertex with the minimum weight: " + u);
-            Q.remove(u);
-            for(WeightedGraph.Vertex neighbor : u.getNeighbors()) {
-                double neighborTime = neighbor.getTimeFromSource();
-                double currentTime = u.getTimeFromSource();
-                double factor = u.getDiagonalNeighbors().contains(neighbor) ? Math.sqrt(2) : 2.0;
-                double weight = (double)(neighbor.getType().value() + u.getType().value())/factor;
+                    " up to ~" + (1.0-(double)i/(double)size)*100.0 + "% remaining"); //max n
+            int u = findMin(context);
+            if(u < 0) break; //the vertices left are unreachable
+            trace.record(u, context.getPrevious(u));
+            if(verbose) System.out.println("selecting the vertex with the minimum weight: " + snapshot(u, context));
+            context.close(u);
+            for(int d = 0; d < graph.getDirections(); d++) {
+                int neighbor = graph.getNeighbor(u, d);
+                if(neighbor < 0) continue;
+                double neighborTime = context.getTimeFromSource(neighbor);
+                double currentTime = context.getTimeFromSource(u);
+                double weight = graph.getCost(u, neighbor, d);
                 if(neighborTime > currentTime + weight) {
-                    if(verbose) System.out.println("update neighbor value: (" + neighbor.getType().value() + "+" + u.getType().value() + ")/2 = " + weight);
-                    neighbor.setTimeFromSource(currentTime+weight);
-                    neighbor.setPrevious(u);
+                    if(verbose) System.out.println("update neighbor value: (" + graph.getWeight(neighbor) + "+" + graph.getWeight(u) + ")/2 = " + weight);
+                    context.setTimeFromSource(neighbor, currentTime+weight);
+                    context.setPrevious(neighbor, u);
                 }
             }
             i++;
         }
 
-        retrievePath(start, end, verbose);
-        return end.getTimeFromSource();
+        if(!context.isClosed(end.getN())) {
+            if(verbose) System.out.println(context.getStop() == null ? "no path found: the end vertex is unreachable" : "search stopped: budget spent");
+            return Double.POSITIVE_INFINITY;
+        }
+        retrievePath(start.getN(), end.getN(), context, verbose);
+        return context.getTimeFromSource(end.getN());
     }
 
     /**
      * Finds the vertex with the smallest distance in the priority queue.
      * <p>
-     * <i>Note: we should use a {@link java.util.PriorityQueue} instead of {@link List}</i>
+     * <i>Note: {@link HeapDijkstraInstance} uses an indexed binary heap instead of a linear scan</i>
      *
-     * @param Q the priority queue of vertices
-     * @return the vertex with the smallest distance
+     * @param context the context of the search (vertices still in the priority queue are the ones not closed)
+     * @return the vertex with the smallest distance, or {@code -1} if no vertex of the queue is reachable
      */
-    private static WeightedGraph.Vertex findMin(List<WeightedGraph.Vertex> Q) {
+    private static int findMin(SearchContext context) {
         double distanceMin = Double.POSITIVE_INFINITY;
-        WeightedGraph.Vertex min = null;
-        for(WeightedGraph.Vertex s : Q) {
-            if(s.getTimeFromSource() < distanceMin) {
-                distanceMin = s.getTimeFromSource();
+        int min = -1;
+        for(int s = 0; s < context.size(); s++) {
+            if(!context.isClosed(s) && context.getTimeFromSource(s) < distanceMin) {
+                distanceMin = context.getTimeFromSource(s);
                 min = s;
             }
         }
@@ -0,0 +1,199 @@
+package main.instances;
+
+import main.model.WeightedGraph;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * The costs of the shortest paths between a set of source vertices and a set of target vertices of a {@link WeightedGraph},
+ * and optionally the paths themselves.
+ * <p>
+ * Instead of one search per pair of vertices, a single Dijkstra search runs from each source and stops
+ * as soon as every target has been selected. The searches of different sources are independent,
+ * so they run in parallel on a {@link ForkJoinPool}, each thread reusing its own {@link SearchContext}.
+ * The costs found are the same as {@link HeapDijkstraInstance}.
+ */
+public class DistanceMatrix {
+    private final int[] sources;
+    private final int[] targets;
+    private final double[][] costs;
+    private final int[][][] paths;
+
+    /**
+     * Constructs a {@link DistanceMatrix} from its arrays.
+     *
+     * @param sources the source vertices
+     * @param targets the target vertices
+     * @param costs the cost of the shortest path between each source and each target
+     * @param paths the shortest path between each source and each target, or {@code null} if they have not been kept
+     */
+    private DistanceMatrix(int[] sources, int[] targets, double[][] costs, int[][][] paths) {
+        this.sources = sources;
+        this.targets = targets;
+        this.costs = costs;
+        this.paths = paths;
+    }
+
+    /**
+     * Computes the distance matrix between sources and targets of a graph, using the common {@link ForkJoinPool}.
+     *
+     * @param graph the graph
+     * @param sources the source vertices
+     * @param targets the target vertices
+     * @param keepPaths whether the paths should be kept, and not only their costs
+     * @return the {@link DistanceMatrix} between {@code sources} and {@code targets}
+     * @throws IllegalArgumentException if a source or a target is not a vertex of the graph
+     */
+    public static DistanceMatrix compute(WeightedGraph graph, int[] sources, int[] targets, boolean keepPaths) {
+        return compute(graph, sources, targets, keepPaths, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the distance matrix between sources and targets of a graph.
+     *
+     * @param graph the graph
+     * @param sources the source vertices
+     * @param targets the target vertices
+     * @param keepPaths whether the paths should be kept, and not only their costs
+     * @param pool the {@link ForkJoinPool} running the searches (its parallelism is the number of threads used)
+     * @return the {@link DistanceMatrix} between {@code sources} and {@code targets}
+     * @throws IllegalArgumentException if a source or a target is not a vertex of the graph
+     */
+    public static DistanceMatrix compute(WeightedGraph graph, int[] sources, int[] targets, boolean keepPaths, ForkJoinPool pool) {
+        final int size = graph.size();
+        boolean[] isTarget = new boolean[size];
+        int distinct = 0;
+        for(int n : sources) {
+            if(n < 0 || n >= size) throw new IllegalArgumentException("Invalid source vertex : " + n);
+        }
+        for(int n : targets) {
+            if(n < 0 || n >= size) throw new IllegalArgumentException("Invalid target vertex : " + n);
+            if(!isTarget[n]) distinct++;
+            isTarget[n] = true;
+        }
+
+        final int targetCount = distinct;
+        double[][] costs = new double[sources.length][];
+        int[][][] paths = keepPaths ? new int[sources.length][][] : null;
+        ThreadLocal<SearchContext> contexts = ThreadLocal.withInitial(() -> new SearchContext(size));
+        pool.submit(() -> IntStream.range(0, sources.length).parallel().forEach(i -> {
+            SearchContext context = contexts.get();
+            search(graph, sources[i], isTarget, targetCount, context);
+            costs[i] = new double[targets.length];
+            if(keepPaths) paths[i] = new int[targets.length][];
+            for(int j = 0; j < targets.length; j++) {
+                costs[i][j] = context.isClosed(targets[j]) ? context.getTimeFromSource(targets[j]) : Double.POSITIVE_INFINITY;
+                if(keepPaths) paths[i][j] = retrievePath(sources[i], targets[j], context);
+            }
+        })).join();
+        return new DistanceMatrix(sources.clone(), targets.clone(), costs, paths);
+    }
+
+    /**
+     * Runs a Dijkstra search from a source vertex until every target vertex has been selected.
+     *
+     * @param graph the graph
+     * @param source the source vertex
+     * @param isTarget whether each vertex is a target
+     * @param targetCount the number of distinct target vertices
+     * @param context the context of the search
+     */
+    private static void search(WeightedGraph graph, int source, boolean[] isTarget, int targetCount, SearchContext context) {
+        context.reset();
+        IndexedMinHeap Q = context.getQueue();
+        context.setTimeFromSource(source, 0.0);
+        Q.push(source, 0.0);
+        int remaining = targetCount;
+        while(remaining > 0 && !Q.isEmpty()) {
+            int u = Q.poll();
+            context.close(u);
+            if(isTarget[u]) remaining--;
+            double currentTime = context.getTimeFromSource(u);
+            for(int d = 0; d < graph.getDirections(); d++) {
+                int neighbor = graph.getNeighbor(u, d);
+                if(neighbor < 0 || context.isClosed(neighbor)) continue;
+                double tentative = currentTime + graph.getCost(u, neighbor, d);
+                if(tentative < context.getTimeFromSource(neighbor)) {
+                    context.setTimeFromSource(neighbor, tentative);
+                    context.setPrevious(neighbor, u);
+                    Q.push(neighbor, tentative);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the path found by a search between its source vertex and a target vertex.
+     *
+     * @param source the source vertex
+     * @param target the target vertex
+     * @param context the context of the search
+     * @return the vertices of the path, from {@code source} to {@code target} (both included),
+     * or an empty array if the target is unreachable
+     */
+    private static int[] retrievePath(int source, int target, SearchContext context) {
+        if(!context.isClosed(target)) return new int[0];
+        int length = 1;
+        for(int n = target; n != source; n = context.getPrevious(n)) length++;
+        int[] path = new int[length];
+        int n = target;
+        for(int k = length - 1; k >= 0; k--) {
+            path[k] = n;
+            if(n != source) n = context.getPrevious(n);
+        }
+        return path;
+    }
+
+    /**
+     * @return the source vertices, in the order of the lines of the matrix
+     */
+    public int[] getSources() {
+        return sources.clone();
+    }
+
+    /**
+     * @return the target vertices, in the order of the columns of the matrix
+     */
+    public int[] getTargets() {
+        return targets.clone();
+    }
+
+    /**
+     * @param i the index of a source
+     * @param j the index of a target
+     * @return the cost of the shortest path between the {@code i}-th source and the {@code j}-th target,
+     * or {@link Double#POSITIVE_INFINITY} if the target is unreachable
+     */
+    public double getCost(int i, int j) {
+        return costs[i][j];
+    }
+
+    /**
+     * @return the costs of the shortest paths, a line per source and a column per target
+     */
+    public double[][] getCosts() {
+        double[][] copy = new double[costs.length][];
+        for(int i = 0; i < costs.length; i++) copy[i] = costs[i].clone();
+        return copy;
+    }
+
+    /**
+     * @return whether the paths have been kept, and not only their costs
+     */
+    public boolean hasPaths() {
+        return paths != null;
+    }
+
+    /**
+     * @param i the index of a source
+     * @param j the index of a target
+     * @return the vertices of the shortest path from the {@code i}-th source to the {@code j}-th target (both included),
+     * or an empty array if the target is unreachable
+     * @throws IllegalStateException if the paths have not been kept
+     */
+    public int[] getPath(int i, int j) {
+        if(paths == null) throw new IllegalStateException("Cannot read the paths of a distance matrix computed without them");
+        return paths[i][j].clone();
+    }
+}
@@ -0,0 +1,190 @@
+package main.instances;
+
+import main.model.WeightedGraph;
+
+import java.util.Arrays;
+
+/**
+ * The distance field and flow field of a {@link WeightedGraph} towards a goal vertex.
+ * <p>
+ * The cost of the shortest path between the goal and every vertex is computed by a single Dijkstra search from the goal.
+ * As edges are symmetric, this is both the distance from the goal and the distance to the goal (a search on the reversed graph).
+ * Each vertex also keeps the direction of its next vertex on a shortest path to the goal, so that the path
+ * of any vertex is a walk following these directions, in O(path length), without any search.
+ * <p>
+ * Distances are stored as {@code float}s and directions as {@code byte}s, which is 5 bytes per vertex.
+ * <p>
+ * The search can be stopped by the budget of a {@link SearchContext}: the field is then incomplete, and only holds
+ * the vertices selected before the stop (the others are unreachable in this field).
+ */
+public class FlowField {
+    /**
+     * The direction of the goal vertex and of unreachable vertices.
+     */
+    public static final byte NONE = -1;
+
+    private final WeightedGraph graph;
+    private final int goal;
+    private final float[] distances;
+    private final byte[] directions;
+    private final int[] order;
+    private final boolean complete;
+
+    /**
+     * Constructs a {@link FlowField} from its arrays.
+     *
+     * @param graph the graph
+     * @param goal the goal vertex
+     * @param distances the cost of the shortest path between each vertex and the goal
+     * @param directions the direction of the next vertex towards the goal, for each vertex
+     * @param order the vertices in the order they have been selected by the search
+     * @param complete whether the search has selected every vertex it could reach
+     */
+    private FlowField(WeightedGraph graph, int goal, float[] distances, byte[] directions, int[] order, boolean complete) {
+        this.graph = graph;
+        this.goal = goal;
+        this.distances = distances;
+        this.directions = directions;
+        this.order = order;
+        this.complete = complete;
+    }
+
+    /**
+     * Computes the distance field and the flow field of a graph towards a goal vertex.
+     *
+     * @param graph the graph
+     * @param goal the goal vertex (or the source vertex of the distance field)
+     * @return the {@link FlowField} towards {@code goal}
+     */
+    public static FlowField compute(WeightedGraph graph, int goal) {
+        return compute(graph, goal, null);
+    }
+
+    /**
+     * Computes the distance field and the flow field of a graph towards a goal vertex, unless the budget of a context
+     * stops the search first.
+     *
+     * @param graph the graph
+     * @param goal the goal vertex (or the source vertex of the distance field)
+     * @param context the context whose budget is checked at every expansion (see {@link SearchContext#isOverBudget()}),
+     *                or {@code null} for no budget
+     * @return the {@link FlowField} towards {@code goal}, incomplete if the search has been stopped (see {@link #isComplete()})
+     */
+    public static FlowField compute(WeightedGraph graph, int goal, SearchContext context) {
+        final int size = graph.size();
+        int[] opposites = new int[graph.getDirections()];
+        for(int d = 0; d < opposites.length; d++) opposites[d] = graph.getDirection(-graph.getLineOffset(d), -graph.getColumnOffset(d));
+
+        double[] timeFromGoal = new double[size];
+        Arrays.fill(timeFromGoal, Double.POSITIVE_INFINITY);
+        byte[] directions = new byte[size];
+        Arrays.fill(directions, NONE);
+        boolean[] closed = new boolean[size];
+        int[] order = new int[size];
+        int count = 0;
+        IndexedMinHeap queue = new IndexedMinHeap(size);
+        timeFromGoal[goal] = 0.0;
+        queue.push(goal, 0.0);
+        boolean complete = true;
+        while(!queue.isEmpty()) {
+            if(context != null && context.isOverBudget()) {
+                complete = false;
+                break;
+            }
+            int u = queue.poll();
+            closed[u] = true;
+            order[count++] = u;
+            for(int d = 0; d < graph.getDirections(); d++) {
+                int neighbor = graph.getNeighbor(u, d);
+                if(neighbor < 0 || closed[neighbor]) continue;
+                double tentative = timeFromGoal[u] + graph.getCost(u, neighbor, d);
+                if(tentative < timeFromGoal[neighbor]) {
+                    timeFromGoal[neighbor] = tentative;
+                    directions[neighbor] = (byte) opposites[d];
+                    queue.push(neighbor, tentative);
+                }
+            }
+        }
+
+        float[] distances = new float[size];
+        for(int n = 0; n < size; n++) {
+            if(closed[n]) {
+                distances[n] = (float) timeFromGoal[n];
+            } else { //unreachable, or not selected before the stop
+                distances[n] = Float.POSITIVE_INFINITY;
+                directions[n] = NONE;
+            }
+        }
+        return new FlowField(graph, goal, distances, directions, Arrays.copyOf(order, count), complete);
+    }
+
+    /**
+     * @return the goal vertex of this field
+     */
+    public int getGoal() {
+        return goal;
+    }
+
+    /**
+     * @return whether the search computing this field has selected every vertex it could reach
+     * (only the vertices selected before the stop of an incomplete field are reachable)
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @param n a vertex
+     * @return the cost of the shortest path between the vertex {@code n} and the goal,
+     * or {@link Float#POSITIVE_INFINITY} if the goal is unreachable
+     */
+    public float getDistance(int n) {
+        return distances[n];
+    }
+
+    /**
+     * @return the largest finite distance of the field
+     */
+    public float getMaxDistance() {
+        float max = 0;
+        for(float distance : distances) {
+            if(distance != Float.POSITIVE_INFINITY) max = Math.max(max, distance);
+        }
+        return max;
+    }
+
+    /**
+     * @param n a vertex
+     * @return the direction of the next vertex from {@code n} towards the goal, or {@link #NONE}
+     */
+    public byte getDirection(int n) {
+        return directions[n];
+    }
+
+    /**
+     * @return the vertices in the order they have been selected by the search computing this field
+     */
+    public int[] getOrder() {
+        return order.clone();
+    }
+
+    /**
+     * Follows the flow field from a vertex to the goal.
+     *
+     * @param from the vertex to start from
+     * @return the vertices of the path, from {@code from} to the goal (both included),
+     * or an empty array if the goal is unreachable
+     */
+    public int[] walk(int from) {
+        if(from != goal && directions[from] == NONE) return new int[0];
+        int length = 1;
+        for(int n = from; n != goal; n = graph.getNeighbor(n, directions[n])) length++;
+        int[] path = new int[length];
+        int n = from;
+        for(int k = 0; k < length; k++) {
+            path[k] = n;
+            if(n != goal) n = graph.getNeighbor(n, directions[n]);
+        }
+        return path;
+    }
+}
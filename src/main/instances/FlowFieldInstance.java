@@ -0,0 +1,86 @@
+package main.instances;
+
+import main.model.WeightedGraph;
+
+import java.util.List;
+
+/**
+ * A {@link PathFinderInstance} following the {@link FlowField} of the end vertex instead of searching a path.
+ * <p>
+ * The flow field of an end vertex is computed by the first search towards it, and kept for the next searches
+ * towards the same vertex: the path of any start vertex is then a walk, in O(path length).
+ * This suits many agents heading to the same goal. The trace holds the vertices selected while computing the field
+ * (none when the field is reused).
+ * <p>
+ * A {@link SearchBudget} stops the computation of the field: the incomplete field is not kept, and the path is only found
+ * if the start vertex has been selected before the stop.
+ */
+public class FlowFieldInstance extends PathFinderInstance {
+    private volatile FlowField field;
+
+    /**
+     * Constructs a {@link FlowFieldInstance} for the specified graph.
+     *
+     * @param graph the {@link WeightedGraph} to operate on
+     */
+    public FlowFieldInstance(WeightedGraph graph) {
+        super(graph);
+    }
+
+    /**
+     * @return the flow field of the last end vertex searched whose computation has not been stopped,
+     * or {@code null} if there has been no such search yet
+     */
+    public FlowField getFlowField() {
+        return field;
+    }
+
+    /**
+     * Follows the flow field of the end vertex (computing it if needed) to find the shortest path between the start and end vertices.
+     *
+     * @param start the starting vertex
+     * @param end the ending vertex
+     * @param verbose whether logs should be output
+     * @return the total cost of the shortest path, or {@link Double#POSITIVE_INFINITY} if the end vertex is unreachable
+     */
+    @Override
+    public double searchPath(WeightedGraph.Vertex start, WeightedGraph.Vertex end, boolean verbose) {
+        SearchContext context = newSearch();
+        SearchTrace trace = context.getTrace();
+
+        FlowField current = field;
+        if(current == null || current.getGoal() != end.getN()) {
+            if(verbose) System.out.println("computing the flow field towards " + end);
+            current = FlowField.compute(graph, end.getN(), context);
+            if(current.isComplete()) field = current;
+            int[] order = current.getOrder();
+            for(int n : order) {
+                byte d = current.getDirection(n);
+                trace.record(n, d != FlowField.NONE ? graph.getNeighbor(n, d) : -1);
+            }
+        } else if(context.isOverBudget()) { //a budget is never ignored, even if the field is reused
+            if(verbose) System.out.println("search stopped: budget spent");
+            return Double.POSITIVE_INFINITY;
+        }
+
+        int[] walk = current.walk(start.getN());
+        if(walk.length == 0) {
+            if(verbose) System.out.println(current.isComplete() ? "no path found: the end vertex is unreachable" : "search stopped: budget spent");
+            return Double.POSITIVE_INFINITY;
+        }
+
+        if(verbose) System.out.println("\n\nfinal path (from the end to the beginning):");
+        List<WeightedGraph.Vertex> path = context.getPath();
+        double cost = 0.0;
+        for(int k = 0; k + 1 < walk.length; k++) { //summed from the beginning, as a search on the graph would
+            cost += graph.getCost(walk[k], walk[k + 1], current.getDirection(walk[k]));
+        }
+        for(int k = walk.length - 1; k >= 0; k--) {
+            WeightedGraph.Vertex v = graph.getVertex(walk[k]);
+            if(k > 0) v.setPrevious(graph.getVertex(walk[k - 1]));
+            if(verbose && k > 0) System.out.println(v);
+            path.add(v);
+        }
+        return cost;
+    }
+}
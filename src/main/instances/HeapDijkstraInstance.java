@@ -0,0 +1,72 @@
+package main.instances;
+
+import main.model.WeightedGraph;
+
+
+/**
+ * An implementation of the Dijkstra algorithm using an indexed binary heap (see {@link IndexedMinHeap})
+ * as its priority queue, running in O((V+E) log V).
+ * <p>
+ * It finds the same costs and records the same trace as {@link DijkstraInstance}, since vertices with the
+ * same time from source are selected by increasing identifier in both implementations.
+ * Unlike {@link DijkstraInstance}, only the vertices reached by the search are ever in the priority queue.
+ */
+public class HeapDijkstraInstance extends PathFinderInstance {
+
+    /**
+     * Constructs a {@link HeapDijkstraInstance} for the specified graph.
+     *
+     * @param graph the {@link WeightedGraph} to operate on
+     */
+    public HeapDijkstraInstance(WeightedGraph graph) {
+        super(graph);
+    }
+
+    /**
+     * Performs the Dijkstra algorithm to find the shortest path between the start and end vertices.
+     *
+     * @param start the starting vertex
+     * @param end the ending vertex
+     * @param verbose whether logs should be output
+     * @return the total cost of the shortest path, or {@link Double#POSITIVE_INFINITY} if the end vertex is unreachable
+     */
+    @Override
+    public double searchPath(WeightedGraph.Vertex start, WeightedGraph.Vertex end, boolean verbose) {
+        SearchContext context = newSearch();
+        SearchTrace trace = context.getTrace();
+        IndexedMinHeap Q = context.getQueue();
+
+        final int size = graph.size();
+        context.setTimeFromSource(start.getN(), 0);
+        Q.push(start.getN(), 0);
+        int i = 0;
+        while(!context.isClosed(end.getN()) && !Q.isEmpty() && !context.isOverBudget()) {
+            if(i%10000 == 0) System.out.println("searching..." +
+                    " up to ~" + (1.0-(double)i/(double)size)*100.0 + "% remaining"); //max n
+            int u = Q.poll();
+            trace.record(u, context.getPrevious(u));
+            if(verbose) System.out.println("selecting the vertex with the minimum weight: " + snapshot(u, context));
+            context.close(u);
+            double currentTime = context.getTimeFromSource(u);
+            for(int d = 0; d < graph.getDirections(); d++) {
+                int neighbor = graph.getNeighbor(u, d);
+                if(neighbor < 0 || context.isClosed(neighbor)) continue;
+                double weight = graph.getCost(u, neighbor, d);
+                if(context.getTimeFromSource(neighbor) > currentTime + weight) {
+                    if(verbose) System.out.println("update neighbor value: (" + graph.getWeight(neighbor) + "+" + graph.getWeight(u) + ")/2 = " + weight);
+                    context.setTimeFromSource(neighbor, currentTime+weight);
+                    context.setPrevious(neighbor, u);
+                    Q.push(neighbor, currentTime+weight);
+                }
+            }
+            i++;
+        }
+
+        if(!context.isClosed(end.getN())) {
+            if(verbose) System.out.println(context.getStop() == null ? "no path found: the end vertex is unreachable" : "search stopped: budget spent");
+            return Double.POSITIVE_INFINITY;
+        }
+        retrievePath(start.getN(), end.getN(), context, verbose);
+        return context.getTimeFromSource(end.getN());
+    }
+}
@@ -1,5 +1,7 @@
 package main.instances;
 
+import main.model.WeightedGraph;
+
 /**
  * Represents a heuristic function used in pathfinding algorithms such as A*.
  * A heuristic function estimates the cost from a given node to a target node, guiding the algorithm
@@ -18,6 +20,17 @@ public interface Heuristic {
      */
     double h(int vx, int vy, int ex, int ey);
 
+    /**
+     * Gives the heuristic to use on a specific graph. Geometric heuristics do not depend on the graph
+     * and return themselves, while heuristics computed from the graph (such as {@link #ALT}) are built here.
+     *
+     * @param graph the graph the heuristic will be used on
+     * @return the heuristic to use on {@code graph}
+     */
+    default Heuristic forGraph(WeightedGraph graph) {
+        return this;
+    }
+
     /**
      * Represents the Euclidean distance heuristic.
      * Suitable for a square grid where movement is allowed in any direction.
@@ -84,4 +97,26 @@ public interface Heuristic {
             return "octile";
         }
     };
+
+    /**
+     * Represents the ALT (landmarks) heuristic, see {@link LandmarkHeuristic}.
+     * Suitable for any map, especially maps with expensive regions to go around.
+     * It needs the distance tables of the graph: use {@link #forGraph(WeightedGraph)} to get the heuristic to use.
+     */
+    Heuristic ALT = new Heuristic() {
+        @Override
+        public double h(int vx, int vy, int ex, int ey) {
+            throw new IllegalStateException("The landmarks of the ALT heuristic have not been computed for this graph");
+        }
+
+        @Override
+        public Heuristic forGraph(WeightedGraph graph) {
+            return new LandmarkHeuristic(graph, LandmarkHeuristic.DEFAULT_LANDMARKS);
+        }
+
+        @Override
+        public String toString() {
+            return "alt";
+        }
+    };
 }
@@ -0,0 +1,197 @@
+package main.instances;
+
+import main.model.WeightedGraph;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An implementation of the HPA* algorithm (Hierarchical Path-Finding A*) for finding a path in a weighted graph,
+ * using the {@link ClusterAbstraction} of the graph.
+ * <p>
+ * The start and end vertices are first linked to the nodes of their clusters by a search inside each cluster.
+ * An A* search then runs on the abstract graph, from the start to the end vertex, and each edge of the abstract path
+ * is refined into vertices of the graph by a search inside its cluster.
+ * <p>
+ * Paths only cross borders of clusters at transitions, so the path found is close to, but not always, the shortest path.
+ * The trace holds the vertices of the abstract nodes selected by the abstract search.
+ */
+public class HierarchicalInstance extends PathFinderInstance {
+    private final int mapSize;
+    private final Heuristic heuristic;
+    private final ClusterAbstraction abstraction;
+    private final ThreadLocal<SearchContext> abstractContexts;
+    private final ThreadLocal<ClusterAbstraction.LocalSearch[]> localSearches;
+
+    /**
+     * Constructs a {@link HierarchicalInstance} for the specified graph, map size, heuristic, and abstraction.
+     *
+     * @param graph the {@link WeightedGraph} to operate on
+     * @param mapSize the size of the map (used for heuristic calculations)
+     * @param heuristic the heuristic function for the abstract A*
+     * @param abstraction the {@link ClusterAbstraction} of {@code graph}
+     */
+    public HierarchicalInstance(WeightedGraph graph, int mapSize, Heuristic heuristic, ClusterAbstraction abstraction) {
+        super(graph);
+        this.mapSize = mapSize;
+        this.heuristic = heuristic;
+        this.abstraction = abstraction;
+        this.abstractContexts = ThreadLocal.withInitial(() -> new SearchContext(abstraction.getNodes() + 2));
+        this.localSearches = ThreadLocal.withInitial(() -> new ClusterAbstraction.LocalSearch[]{
+                new ClusterAbstraction.LocalSearch(abstraction), new ClusterAbstraction.LocalSearch(abstraction)});
+    }
+
+    /**
+     * @return {@code false}: the search runs on the abstract graph, whose nodes are not vertices a partial path could lead to
+     */
+    @Override
+    public boolean supportsBudget() {
+        return false;
+    }
+
+    /**
+     * Performs the HPA* algorithm to find a path between the start and end vertices.
+     *
+     * @param start the starting vertex
+     * @param end the ending vertex
+     * @param verbose whether logs should be output
+     * @return the total cost of the path found, or {@link Double#POSITIVE_INFINITY} if the end vertex is unreachable
+     */
+    @Override
+    public double searchPath(WeightedGraph.Vertex start, WeightedGraph.Vertex end, boolean verbose) {
+        SearchContext context = newSearch();
+        SearchTrace trace = context.getTrace();
+        SearchContext abstractContext = abstractContexts.get();
+        abstractContext.reset();
+        IndexedMinHeap open = abstractContext.getQueue();
+        ClusterAbstraction.LocalSearch[] searches = localSearches.get();
+        ClusterAbstraction.LocalSearch fromStart = searches[0];
+        ClusterAbstraction.LocalSearch toEnd = searches[1];
+
+        final int s = start.getN();
+        final int e = end.getN();
+        final int ex = e % mapSize;
+        final int ey = e / mapSize;
+        final int source = abstraction.getNodes(); //abstract node of the start vertex
+        final int target = source + 1; //abstract node of the end vertex
+        final int startCluster = abstraction.getCluster(s);
+        final int endCluster = abstraction.getCluster(e);
+        fromStart.run(s);
+        toEnd.run(e);
+
+        abstractContext.setTimeFromSource(source, 0.0);
+        abstractContext.setF(source, heuristic.h(s % mapSize, s / mapSize, ex, ey));
+        open.push(source, abstractContext.getF(source));
+
+        while(!open.isEmpty()) {
+            int u = open.poll();
+            int vertex = u == source ? s : u == target ? e : abstraction.getVertex(u);
+            trace.record(vertex, -1);
+            if(verbose) System.out.println("selecting the abstract node with the minimum f-score: " + graph.getVertex(vertex));
+            abstractContext.close(u);
+            if(u == target) break;
+
+            double time = abstractContext.getTimeFromSource(u);
+            if(u == source) {
+                for(int node : abstraction.getClusterNodes(startCluster)) relax(u, node, time + fromStart.getTimeFromSource(abstraction.getVertex(node)), abstractContext, ex, ey);
+                if(startCluster == endCluster) relax(u, target, time + fromStart.getTimeFromSource(e), abstractContext, ex, ey);
+                continue;
+            }
+            relax(u, abstraction.getPartner(u), time + abstraction.getPartnerCost(u), abstractContext, ex, ey);
+            for(int node : abstraction.getClusterNodes(abstraction.getNodeCluster(u))) {
+                if(node != u) relax(u, node, time + abstraction.getIntraCost(u, node), abstractContext, ex, ey);
+            }
+            if(abstraction.getNodeCluster(u) == endCluster) relax(u, target, time + toEnd.getTimeFromSource(vertex), abstractContext, ex, ey);
+        }
+
+        if(!abstractContext.isClosed(target) || abstractContext.getTimeFromSource(target) == Double.POSITIVE_INFINITY) {
+            if(verbose) System.out.println("no path found: the end vertex is unreachable");
+            return Double.POSITIVE_INFINITY;
+        }
+        return retrievePath(s, e, source, target, abstractContext, fromStart, toEnd, context, verbose);
+    }
+
+    /**
+     * Updates an abstract node if the path through the node {@code u} is better.
+     *
+     * @param u the abstract node being expanded
+     * @param node the abstract node reached
+     * @param tentative the time from source of {@code node} through {@code u}
+     * @param abstractContext the context of the abstract search
+     * @param ex the x-coordinate of the end vertex
+     * @param ey the y-coordinate of the end vertex
+     */
+    private void relax(int u, int node, double tentative, SearchContext abstractContext, int ex, int ey) {
+        if(tentative >= abstractContext.getTimeFromSource(node)) return;
+        int vertex = node == abstraction.getNodes() + 1 ? ey*mapSize + ex : abstraction.getVertex(node);
+        double dist = heuristic.h(vertex % mapSize, vertex / mapSize, ex, ey);
+        abstractContext.setTimeFromSource(node, tentative);
+        abstractContext.setPrevious(node, u);
+        abstractContext.setF(node, tentative + dist);
+        abstractContext.open(node);
+        abstractContext.getQueue().push(node, tentative + dist);
+    }
+
+    /**
+     * Refines the abstract path found into vertices of the graph, and builds the path from the end to the start vertex.
+     *
+     * @param start the starting vertex
+     * @param end the ending vertex
+     * @param source the abstract node of the starting vertex
+     * @param target the abstract node of the ending vertex
+     * @param abstractContext the context of the abstract search
+     * @param fromStart the search inside the cluster of the starting vertex
+     * @param toEnd the search inside the cluster of the ending vertex
+     * @param context the context of the search, holding the path
+     * @param verbose whether logs should be output
+     * @return the total cost of the path, summed over the edges of the graph
+     */
+    private double retrievePath(int start, int end, int source, int target, SearchContext abstractContext,
+                                ClusterAbstraction.LocalSearch fromStart, ClusterAbstraction.LocalSearch toEnd,
+                                SearchContext context, boolean verbose) {
+        List<Integer> nodes = new ArrayList<>(); //abstract path, from the end to the beginning
+        for(int node = target; node != source; node = abstractContext.getPrevious(node)) nodes.add(node);
+
+        List<Integer> vertices = new ArrayList<>(); //from the end to the beginning
+        int first = end; //the vertex reached from the start cluster
+        if(nodes.size() > 1) {
+            List<Integer> inEndCluster = new ArrayList<>();
+            for(int n = abstraction.getVertex(nodes.get(1)); n != end; ) {
+                n = toEnd.getPrevious(n);
+                inEndCluster.add(0, n);
+            }
+            vertices.addAll(inEndCluster);
+            for(int k = 2; k < nodes.size(); k++) { //between two abstract nodes, from the end
+                int from = abstraction.getVertex(nodes.get(k));
+                int to = abstraction.getVertex(nodes.get(k - 1));
+                if(abstraction.getPartner(nodes.get(k)) == nodes.get(k - 1)) {
+                    vertices.add(to);
+                    continue;
+                }
+                toEnd.run(from, to);
+                for(int n = to; n != from; n = toEnd.getPrevious(n)) vertices.add(n);
+            }
+            first = abstraction.getVertex(nodes.get(nodes.size() - 1));
+        }
+        for(int n = first; n != start; n = fromStart.getPrevious(n)) vertices.add(n); //in the start cluster
+        vertices.add(start);
+
+        if(verbose) System.out.println("\n\nfinal path (from the end to the beginning):");
+        List<WeightedGraph.Vertex> path = context.getPath();
+        final int columns = graph.getColumns();
+        double cost = 0.0;
+        for(int k = vertices.size() - 1; k > 0; k--) { //summed from the beginning, as a search on the graph would
+            int from = vertices.get(k);
+            int to = vertices.get(k - 1);
+            int d = graph.getDirection(to / columns - from / columns, to % columns - from % columns);
+            cost += graph.getCost(from, to, d);
+        }
+        for(int k = 0; k < vertices.size(); k++) {
+            WeightedGraph.Vertex v = graph.getVertex(vertices.get(k));
+            if(k + 1 < vertices.size()) v.setPrevious(graph.getVertex(vertices.get(k + 1)));
+            if(verbose && k + 1 < vertices.size()) System.out.println(v);
+            path.add(v);
+        }
+        return cost;
+    }
+}
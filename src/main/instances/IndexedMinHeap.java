@@ -0,0 +1,222 @@
+package main.instances;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of vertices (primitive indices between 0 and the capacity of the heap, excluded),
+ * ordered by a {@code double} key. Each vertex is at most once in the heap, and its key can be updated in O(log n).
+ * <p>
+ * Vertices with the same key are ordered by increasing index, so that the heap pops vertices in the same order
+ * as a linear scan keeping the first minimum found.
+ * <p>
+ * The position of a vertex is only trusted if the heap holds this vertex at this position, which means that
+ * {@link #clear()} is O(1) and no per-vertex array has to be reset between two searches.
+ * <p>
+ * Positions are kept in an array indexed by vertex, unless a subclass stores them elsewhere
+ * (see {@link #position(int)} and {@link SparseSearchContext}): the heap itself then grows with the number of vertices it holds.
+ */
+public class IndexedMinHeap {
+    private int[] heap;
+    private double[] keys;
+    private final int[] positions;
+    private int size;
+
+    /**
+     * Constructs an empty {@link IndexedMinHeap} able to hold the vertices {@code 0} to {@code capacity-1}.
+     *
+     * @param capacity the number of vertices
+     */
+    public IndexedMinHeap(int capacity) {
+        this(capacity, new int[capacity]);
+    }
+
+    /**
+     * Constructs an empty {@link IndexedMinHeap} with the specified initial capacity and array of positions.
+     *
+     * @param capacity the initial number of vertices the heap can hold (it grows if needed)
+     * @param positions the position of each vertex, or {@code null} if {@link #position(int)} and
+     *                  {@link #setPosition(int, int)} are overridden
+     */
+    protected IndexedMinHeap(int capacity, int[] positions) {
+        this.heap = new int[Math.max(1, capacity)];
+        this.keys = new double[heap.length];
+        this.positions = positions;
+        this.size = 0;
+    }
+
+    /**
+     * @param n a vertex
+     * @return the last position of the vertex {@code n} in the heap, only meaningful if confirmed by
+     * {@link #contains(int)} (it may be outdated, or any value if the vertex has never been in the heap)
+     */
+    protected int position(int n) {
+        return positions[n];
+    }
+
+    /**
+     * Records the position of a vertex in the heap.
+     *
+     * @param n a vertex
+     * @param p the position of the vertex
+     */
+    protected void setPosition(int n, int p) {
+        positions[n] = p;
+    }
+
+    /**
+     * Removes all vertices from the heap.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return whether the heap is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the number of vertices in the heap
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param n the vertex
+     * @return whether the vertex {@code n} is in the heap
+     */
+    public boolean contains(int n) {
+        int p = position(n);
+        return p >= 0 && p < size && heap[p] == n;
+    }
+
+    /**
+     * Inserts the vertex {@code n} with the specified key, or updates its key if it is already in the heap.
+     *
+     * @param n the vertex
+     * @param key the key of the vertex
+     */
+    public void push(int n, double key) {
+        int p;
+        if(contains(n)) {
+            p = position(n);
+        } else {
+            if(size == heap.length) {
+                heap = Arrays.copyOf(heap, 2*size);
+                keys = Arrays.copyOf(keys, 2*size);
+            }
+            p = size++;
+            heap[p] = n;
+            setPosition(n, p);
+        }
+        keys[p] = key;
+        siftUp(p);
+        siftDown(position(n));
+    }
+
+    /**
+     * @return the key of the vertex at the top of the heap
+     */
+    public double peekKey() {
+        return keys[0];
+    }
+
+    /**
+     * @return the vertex at the top of the heap, without removing it
+     */
+    public int peek() {
+        return heap[0];
+    }
+
+    /**
+     * @param p a position in the heap, between {@code 0} and {@link #size()} (excluded)
+     * @return the vertex at this position (only the vertex at position {@code 0} is known to have the smallest key)
+     */
+    public int get(int p) {
+        return heap[p];
+    }
+
+    /**
+     * Removes the vertex with the smallest key from the heap.
+     *
+     * @return the vertex with the smallest key
+     */
+    public int poll() {
+        int min = heap[0];
+        size--;
+        if(size > 0) {
+            move(size, 0);
+            siftDown(0);
+        }
+        return min;
+    }
+
+    /**
+     * @param i a position in the heap
+     * @param j a position in the heap
+     * @return whether the vertex at position {@code i} comes before the vertex at position {@code j}
+     */
+    private boolean less(int i, int j) {
+        return keys[i] < keys[j] || (keys[i] == keys[j] && heap[i] < heap[j]);
+    }
+
+    /**
+     * Moves the vertex at position {@code from} to position {@code to}.
+     *
+     * @param from the current position
+     * @param to the new position
+     */
+    private void move(int from, int to) {
+        heap[to] = heap[from];
+        keys[to] = keys[from];
+        setPosition(heap[to], to);
+    }
+
+    /**
+     * Swaps the vertices at positions {@code i} and {@code j}.
+     *
+     * @param i a position in the heap
+     * @param j a position in the heap
+     */
+    private void swap(int i, int j) {
+        int n = heap[i];
+        double key = keys[i];
+        move(j, i);
+        heap[j] = n;
+        keys[j] = key;
+        setPosition(n, j);
+    }
+
+    /**
+     * Moves the vertex at position {@code p} up until the heap is ordered.
+     *
+     * @param p a position in the heap
+     */
+    private void siftUp(int p) {
+        while(p > 0) {
+            int parent = (p - 1) >>> 1;
+            if(!less(p, parent)) break;
+            swap(p, parent);
+            p = parent;
+        }
+    }
+
+    /**
+     * Moves the vertex at position {@code p} down until the heap is ordered.
+     *
+     * @param p a position in the heap
+     */
+    private void siftDown(int p) {
+        while(true) {
+            int child = 2*p + 1;
+            if(child >= size) break;
+            if(child + 1 < size && less(child + 1, child)) child++;
+            if(!less(child, p)) break;
+            swap(p, child);
+            p = child;
+        }
+    }
+}
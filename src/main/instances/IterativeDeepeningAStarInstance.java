@@ -0,0 +1,321 @@
+package main.instances;
+
+import main.model.WeightedGraph;
+
+import java.util.Arrays;
+
+/**
+ * An implementation of IDA* (Iterative Deepening A*): a series of depth-first searches bounded by an f-score.
+ * <p>
+ * As the costs of a grid are real numbers (averages of weights, and {@code sqrt(2)} times more for diagonal moves),
+ * raising the bound to the smallest f-score that exceeded it would add a handful of vertices per iteration.
+ * The bound is therefore raised by a factor of {@value #BOUND_GROWTH} (and at least to this f-score), as IDA*-CR does,
+ * so that each iteration explores a lot more vertices than the previous one. An iteration may then reach the end vertex
+ * by a path longer than the shortest one: the best path found is kept, and the iteration goes on with its cost as the
+ * bound, until no shorter path can be found.
+ * <p>
+ * There is no open set: a search only keeps the current branch (a vertex, its time from source and the next direction
+ * to explore per depth), and a transposition cache of bounded size remembering the best time from source each vertex
+ * has been reached with. A vertex reached again with a larger time from source (or with the same one during the same
+ * iteration) is not explored again, which keeps the searches from exploring the many equivalent branches of a grid.
+ * The cache has two entries per bucket: one keeps the vertex reached with the smallest time from source (whose subtree
+ * is the largest), the other the last vertex recorded. A vertex forgotten by the cache is only explored again, so its
+ * size bounds the memory of the search to O(path length) plus the cache, whatever the size of the map. The searches
+ * are fast as long as the cache can hold the region they explore, and slow down quickly beyond.
+ * <p>
+ * If the heuristic is admissible, the path found is a shortest path. The trace holds the vertices selected by the last
+ * iteration, the one reaching the end vertex (only its first {@link WeightedGraph#size()} selections are traced,
+ * which is as many as can be animated), while a trace file gets the vertices selected by all the iterations.
+ */
+public class IterativeDeepeningAStarInstance extends PathFinderInstance {
+    /**
+     * The default number of entries of the transposition cache.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 1 << 20;
+    /**
+     * The factor the bound is raised by from an iteration to the next one.
+     */
+    public static final double BOUND_GROWTH = 1.5;
+
+    private final int mapSize;
+    private final Heuristic heuristic;
+    private final ThreadLocal<State> states;
+
+    /**
+     * Constructs an {@link IterativeDeepeningAStarInstance} for the specified graph, map size, and heuristic,
+     * with a transposition cache of {@link #DEFAULT_CACHE_SIZE} entries (or fewer on smaller maps).
+     *
+     * @param graph the {@link WeightedGraph} to operate on
+     * @param mapSize the size of the map (used for heuristic calculations)
+     * @param heuristic the heuristic function
+     */
+    public IterativeDeepeningAStarInstance(WeightedGraph graph, int mapSize, Heuristic heuristic) {
+        this(graph, mapSize, heuristic, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Constructs an {@link IterativeDeepeningAStarInstance} for the specified graph, map size, heuristic, and cache size.
+     *
+     * @param graph the {@link WeightedGraph} to operate on
+     * @param mapSize the size of the map (used for heuristic calculations)
+     * @param heuristic the heuristic function
+     * @param cacheSize the number of entries of the transposition cache, a power of two
+     *                  (reduced to the smallest power of two holding every vertex of the map, and at least 2)
+     * @throws IllegalArgumentException if {@code cacheSize} is not a positive power of two
+     */
+    public IterativeDeepeningAStarInstance(WeightedGraph graph, int mapSize, Heuristic heuristic, int cacheSize) {
+        super(graph);
+        if(cacheSize <= 0 || Integer.bitCount(cacheSize) != 1)
+            throw new IllegalArgumentException("Invalid cache size : " + cacheSize + " (must be a positive power of two)");
+        this.mapSize = mapSize;
+        this.heuristic = heuristic;
+        final int capacity = Math.max(2, Math.min(cacheSize, Integer.highestOneBit(Math.max(1, graph.size() - 1)) << 1));
+        this.states = ThreadLocal.withInitial(() -> new State(capacity));
+    }
+
+    /**
+     * Performs IDA* to find the shortest path between the start and end vertices.
+     * Each iteration explores, depth first, the vertices whose f-score is at most the bound; the search stops after
+     * the iteration reaching the end vertex, or when an iteration exceeds the bound nowhere (the end vertex is then unreachable).
+     *
+     * @param start the starting vertex
+     * @param end the ending vertex
+     * @param verbose whether logs should be output
+     * @return the total cost of the shortest path, or {@link Double#POSITIVE_INFINITY} if the end vertex is unreachable
+     */
+    @Override
+    public double searchPath(WeightedGraph.Vertex start, WeightedGraph.Vertex end, boolean verbose) {
+        SearchContext context = newSparseSearch(); //only the final branch is written to it
+        SearchTrace trace = context.getTrace();
+        State state = states.get();
+        state.reset();
+
+        final int s = start.getN();
+        final int e = end.getN();
+        final int ex = e % mapSize;
+        final int ey = e / mapSize;
+        double bound = heuristic.h(s % mapSize, s / mapSize, ex, ey);
+        while(true) {
+            if(verbose) System.out.println("new iteration with the f-score bound " + bound);
+            state.nextIteration();
+            trace.reset(trace.getPeriod());
+            long selections = 0;
+            double next = Double.POSITIVE_INFINITY;
+            double best = Double.POSITIVE_INFINITY; //the cost of the best path found by this iteration
+            state.push(s, 0.0);
+            state.isDominated(s, 0.0);
+            int depth = 0;
+            while(depth >= 0) {
+                int u = state.vertices[depth];
+                int d = state.directions[depth]++;
+                if(d == 0) { //u is selected
+                    if(context.isOverBudget()) {
+                        if(best < Double.POSITIVE_INFINITY) state.restoreBest();
+                        publish(state, state.depth, context);
+                        if(verbose) System.out.println("search stopped: budget spent");
+                        return Double.POSITIVE_INFINITY;
+                    }
+                    int previous = depth > 0 ? state.vertices[depth - 1] : -1;
+                    if(selections++ < graph.size()) trace.record(u, previous);
+                    if(verbose) {
+                        WeightedGraph.Vertex temp = graph.getVertex(u);
+                        if(previous >= 0) temp.setPrevious(graph.getVertex(previous));
+                        System.out.println("selecting the vertex: " + temp);
+                    }
+                    if(u == e) {
+                        if(state.times[depth] < best) {
+                            if(verbose) System.out.println("path found with the cost " + state.times[depth] + ": looking for a shorter one");
+                            best = state.times[depth];
+                            bound = Math.min(bound, best);
+                            state.saveBest();
+                        }
+                        depth = state.pop();
+                        continue;
+                    }
+                }
+                if(d == graph.getDirections()) {
+                    depth = state.pop();
+                    continue;
+                }
+
+                int neighbor = graph.getNeighbor(u, d);
+                if(neighbor < 0 || (depth > 0 && neighbor == state.vertices[depth - 1])) continue;
+                double tentative = state.times[depth] + graph.getCost(u, neighbor, d);
+                double f = tentative + heuristic.h(neighbor % mapSize, neighbor / mapSize, ex, ey);
+                if(f > bound) {
+                    next = Math.min(next, f);
+                    continue;
+                }
+                if(state.isDominated(neighbor, tentative)) continue;
+                depth = state.push(neighbor, tentative);
+            }
+
+            if(best < Double.POSITIVE_INFINITY) {
+                state.restoreBest();
+                publish(state, state.depth, context);
+                retrievePath(s, e, context, verbose);
+                return context.getTimeFromSource(e);
+            }
+            if(next == Double.POSITIVE_INFINITY) {
+                if(verbose) System.out.println("no path found: the end vertex is unreachable");
+                return Double.POSITIVE_INFINITY;
+            }
+            bound = Math.max(next, bound * BOUND_GROWTH);
+        }
+    }
+
+    /**
+     * Writes the current branch to the context of the search, as the closed vertices with their time from source and
+     * previous vertex (so that the path to its last vertex can be retrieved).
+     * A branch can go through a vertex twice if the cache has forgotten it: the loop is then left out.
+     *
+     * @param state the state of the search
+     * @param depth the depth of the last vertex of the branch
+     * @param context the context of the search
+     */
+    private void publish(State state, int depth, SearchContext context) {
+        double saved = 0.0; //the cost of the loops left out
+        for(int k = 0; k <= depth; k++) {
+            int n = state.vertices[k];
+            if(context.isClosed(n)) { //end of a loop
+                saved = state.times[k] - context.getTimeFromSource(n);
+                continue;
+            }
+            context.setTimeFromSource(n, state.times[k] - saved);
+            if(k > 0) context.setPrevious(n, state.vertices[k - 1]);
+            context.close(n);
+        }
+    }
+
+    /**
+     * The state of IDA* on a thread: the current branch, the best branch reaching the end vertex during the current
+     * iteration, and the transposition cache.
+     * An entry of the cache belongs to the current search if it has been stamped by one of its iterations.
+     */
+    private static class State {
+        private int[] vertices;
+        private double[] times;
+        private int[] directions;
+        private int depth;
+        private int[] pathVertices;
+        private double[] pathTimes;
+        private int pathDepth;
+        private final int[] keys;
+        private final double[] bestTimes;
+        private final int[] stamps;
+        private final int shift;
+        private int first;
+        private int iteration;
+
+        /**
+         * Constructs the {@link State} of the searches of a thread.
+         *
+         * @param capacity the number of entries of the cache, a power of two
+         */
+        private State(int capacity) {
+            this.vertices = new int[64];
+            this.times = new double[64];
+            this.directions = new int[64];
+            this.pathVertices = new int[64];
+            this.pathTimes = new double[64];
+            this.keys = new int[capacity];
+            this.bestTimes = new double[capacity];
+            this.stamps = new int[capacity];
+            this.shift = Integer.numberOfLeadingZeros(capacity) + 1;
+        }
+
+        /**
+         * Starts a new search: the entries of the cache stamped by the previous searches are ignored.
+         */
+        private void reset() {
+            first = iteration + 1;
+        }
+
+        /**
+         * Starts a new iteration of the current search, with an empty branch.
+         */
+        private void nextIteration() {
+            if(iteration == Integer.MAX_VALUE) { //stamps would overflow
+                Arrays.fill(stamps, 0);
+                iteration = 0;
+                first = 1;
+            }
+            iteration++;
+            depth = -1;
+        }
+
+        /**
+         * Adds a vertex at the end of the branch.
+         *
+         * @param n the vertex
+         * @param time its time from source
+         * @return the depth of the vertex
+         */
+        private int push(int n, double time) {
+            if(++depth == vertices.length) {
+                vertices = Arrays.copyOf(vertices, 2*depth);
+                times = Arrays.copyOf(times, 2*depth);
+                directions = Arrays.copyOf(directions, 2*depth);
+            }
+            vertices[depth] = n;
+            times[depth] = time;
+            directions[depth] = 0;
+            return depth;
+        }
+
+        /**
+         * Keeps the current branch as the best one reaching the end vertex.
+         */
+        private void saveBest() {
+            if(depth >= pathVertices.length) {
+                pathVertices = Arrays.copyOf(pathVertices, vertices.length);
+                pathTimes = Arrays.copyOf(pathTimes, vertices.length);
+            }
+            System.arraycopy(vertices, 0, pathVertices, 0, depth + 1);
+            System.arraycopy(times, 0, pathTimes, 0, depth + 1);
+            pathDepth = depth;
+        }
+
+        /**
+         * Replaces the current branch by the best one kept (see {@link #saveBest()}).
+         */
+        private void restoreBest() {
+            depth = -1;
+            for(int k = 0; k <= pathDepth; k++) push(pathVertices[k], pathTimes[k]);
+        }
+
+        /**
+         * Removes the last vertex of the branch.
+         *
+         * @return the depth of the new last vertex, or {@code -1} if the branch is empty
+         */
+        private int pop() {
+            return --depth;
+        }
+
+        /**
+         * Checks whether a vertex has already been reached with a better time from source, and records this time otherwise
+         * (in the first entry of its bucket if it has a smaller time than the vertex there, in the second one otherwise).
+         *
+         * @param n the vertex
+         * @param time its time from source on the current branch
+         * @return {@code true} if the vertex has been reached by the current search with a smaller time from source,
+         * or with the same one during the current iteration, {@code false} otherwise
+         */
+        private boolean isDominated(int n, double time) {
+            final int slot = ((n * 0x9E3779B9) >>> shift) & ~1; //first slot of the bucket of n
+            for(int k = slot; k < slot + 2; k++) {
+                if(keys[k] != n || stamps[k] < first) continue;
+                if(time > bestTimes[k] || (time == bestTimes[k] && stamps[k] == iteration)) return true;
+                bestTimes[k] = time;
+                stamps[k] = iteration;
+                return false;
+            }
+            int k = stamps[slot] < first || time < bestTimes[slot] ? slot : slot + 1;
+            keys[k] = n;
+            bestTimes[k] = time;
+            stamps[k] = iteration;
+            return false;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package main.instances;
+
+import main.model.WeightedGraph;
+
+import java.util.List;
+
+/**
+ * An implementation of the Jump Point Search algorithm (an A* that skips symmetric paths) for finding the shortest path
+ * in a weighted graph.
+ * <p>
+ * Classic Jump Point Search needs a grid where every move of the same kind has the same cost. Here, vertices are weighted,
+ * so jumps are only made inside uniform regions: a vertex is <i>uniform</i> if all the vertices around it have its weight,
+ * and a jump stops (the vertex is a jump point) as soon as it reaches a vertex that is not uniform, or the end vertex.
+ * Jump points that are not uniform have all their neighbors as successors, which makes region boundaries behave
+ * like the forced neighbors of classic Jump Point Search. On a map with a single weight, this is classic Jump Point Search.
+ * <p>
+ * On 8-connected graphs (config maps), diagonal jumps look for jump points horizontally and vertically at each step.
+ * On 4-connected graphs (image maps), vertical jumps look for jump points horizontally at each step.
+ * A jump point found this way is a successor of the vertex the jump started from, with a path turning at this step:
+ * the step itself is not a jump point, and the jump goes on. Jump points are thus only region boundaries and the end vertex.
+ * Costs are the same as {@link AStarInstance}, and the path found contains every vertex between two jump points.
+ */
+public class JumpPointSearchInstance extends PathFinderInstance {
+    private final int mapSize;
+    private final Heuristic heuristic;
+    private final long[] uniform;
+    private final int[][] branches;
+    private final ThreadLocal<int[]> elbows;
+
+    /**
+     * Constructs a {@link JumpPointSearchInstance} for the specified graph, map size, and heuristic.
+     * The uniform vertices of the graph are computed once here.
+     *
+     * @param graph the {@link WeightedGraph} to operate on
+     * @param mapSize the size of the map (used for heuristic calculations)
+     * @param heuristic the heuristic function for A*
+     */
+    public JumpPointSearchInstance(WeightedGraph graph, int mapSize, Heuristic heuristic) {
+        super(graph);
+        this.mapSize = mapSize;
+        this.heuristic = heuristic;
+        this.uniform = computeUniform(graph);
+        this.branches = computeBranches(graph);
+        this.elbows = ThreadLocal.withInitial(() -> new int[graph.size()]);
+    }
+
+    /**
+     * Finds the uniform vertices of a graph (vertices whose surrounding vertices all have the same weight).
+     * Diagonal vertices are also checked on 4-connected graphs, since they are on the detours pruned by a jump.
+     *
+     * @param graph the graph
+     * @return a bitset of the uniform vertices
+     */
+    private static long[] computeUniform(WeightedGraph graph) {
+        final int lines = graph.getLines();
+        final int columns = graph.getColumns();
+        long[] bits = new long[(graph.size() + 63) >>> 6];
+        for(int line = 0; line < lines; line++) {
+            for(int col = 0; col < columns; col++) {
+                int n = line * columns + col;
+                boolean same = true;
+                for(int l = Math.max(0, line-1); l <= Math.min(lines-1, line+1) && same; l++) {
+                    for(int c = Math.max(0, col-1); c <= Math.min(columns-1, col+1) && same; c++) {
+                        if(graph.getWeight(l * columns + c) != graph.getWeight(n)) same = false;
+                    }
+                }
+                if(same) bits[n >>> 6] |= 1L << n;
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Computes, for each direction, the directions to look into at each step of a jump in this direction:
+     * the horizontal and vertical components of a diagonal direction (8-connected graphs),
+     * the horizontal directions of a vertical direction (4-connected graphs), and nothing otherwise.
+     *
+     * @param graph the graph
+     * @return the branching directions of each direction
+     */
+    private static int[][] computeBranches(WeightedGraph graph) {
+        int[][] branches = new int[graph.getDirections()][];
+        for(int d = 0; d < branches.length; d++) {
+            int dl = graph.getLineOffset(d);
+            int dc = graph.getColumnOffset(d);
+            if(graph.isDiagonal(d)) branches[d] = new int[]{graph.getDirection(0, dc), graph.getDirection(dl, 0)};
+            else if(!graph.isDiagonal() && dl != 0) branches[d] = new int[]{graph.getDirection(0, 1), graph.getDirection(0, -1)};
+            else branches[d] = new int[0];
+        }
+        return branches;
+    }
+
+    /**
+     * @param n the vertex
+     * @return whether all the vertices around the vertex {@code n} have its weight
+     */
+    private boolean isUniform(int n) {
+        return (uniform[n >>> 6] & (1L << n)) != 0;
+    }
+
+    /**
+     * Performs the Jump Point Search algorithm to find the shortest path between the start and end vertices.
+     *
+     * @param start the starting vertex
+     * @param end the ending vertex
+     * @param verbose whether logs should be output
+     * @return the total cost of the shortest path, or {@link Double#POSITIVE_INFINITY} if the end vertex is unreachable
+     */
+    @Override
+    public double searchPath(WeightedGraph.Vertex start, WeightedGraph.Vertex end, boolean verbose) {
+        SearchContext context = newSearch();
+        SearchTrace trace = context.getTrace();
+        IndexedMinHeap open = context.getQueue();
+        int[] elbows = this.elbows.get();
+
+        final int e = end.getN();
+        context.setTimeFromSource(start.getN(), 0.0);
+        context.setF(start.getN(), heuristic.h(start.getN()%mapSize, start.getN()/mapSize, e%mapSize, e/mapSize));
+        open.push(start.getN(), context.getF(start.getN()));
+
+        while(!open.isEmpty() && !context.isOverBudget()) {
+            int u = open.poll();
+            trace.record(u, context.getPrevious(u));
+            if(verbose) System.out.println("selecting the jump point with the minimum f-score: " + snapshot(u, context));
+            context.close(u);
+            if(u == e) break;
+
+            for(int d = 0; d < graph.getDirections(); d++) {
+                double time = context.getTimeFromSource(u);
+                for(int x = u, y; (y = graph.getNeighbor(x, d)) >= 0; x = y) {
+                    time += graph.getCost(x, y, d);
+                    if(y == e || !isUniform(y)) {
+                        relax(u, u, y, time, e, context, elbows, verbose);
+                        break;
+                    }
+                    for(int b : branches[d]) {
+                        int jumpPoint = jump(y, b, e);
+                        if(jumpPoint >= 0) relax(u, y, jumpPoint, time + cost(y, jumpPoint, b), e, context, elbows, verbose);
+                    }
+                }
+            }
+        }
+
+        if(!context.isClosed(e)) {
+            if(verbose) System.out.println(context.getStop() == null ? "no path found: the end vertex is unreachable" : "search stopped: budget spent");
+            return Double.POSITIVE_INFINITY;
+        }
+        retrievePath(start.getN(), e, context, verbose);
+        return context.getTimeFromSource(e);
+    }
+
+    /**
+     * Opens a jump point if the path found to it is shorter than the one known.
+     *
+     * @param u the vertex the jump started from
+     * @param elbow the vertex where the path to the jump point turns ({@code u} if it does not turn)
+     * @param jumpPoint the jump point
+     * @param tentative the cost of the path to the jump point
+     * @param end the ending vertex
+     * @param context the context of the search
+     * @param elbows the elbow of the path to each jump point
+     * @param verbose whether logs should be output
+     */
+    private void relax(int u, int elbow, int jumpPoint, double tentative, int end, SearchContext context, int[] elbows, boolean verbose) {
+        if(tentative < context.getTimeFromSource(jumpPoint)) {
+            double dist = heuristic.h(jumpPoint % mapSize, jumpPoint / mapSize, end % mapSize, end / mapSize);
+            context.setPrevious(jumpPoint, u);
+            elbows[jumpPoint] = elbow;
+            context.setTimeFromSource(jumpPoint, tentative);
+            if(verbose) System.out.println("update jump point " + jumpPoint + " f-score: " + (tentative+dist));
+            context.setF(jumpPoint, tentative+dist);
+            context.open(jumpPoint);
+            context.getQueue().push(jumpPoint, tentative+dist);
+        }
+    }
+
+    /**
+     * Jumps from a vertex in a direction that does not branch, until a jump point is found.
+     *
+     * @param n the vertex to jump from
+     * @param d the direction of the jump
+     * @param end the ending vertex
+     * @return the jump point found, or {@code -1} if the jump leaves the grid
+     */
+    private int jump(int n, int d, int end) {
+        int x = n;
+        while(true) {
+            int y = graph.getNeighbor(x, d);
+            if(y < 0 || y == end || !isUniform(y)) return y;
+            x = y;
+        }
+    }
+
+    /**
+     * @param from the vertex a jump starts from
+     * @param to the vertex the jump ends at
+     * @param d the direction of the jump
+     * @return the cost of the jump
+     */
+    private double cost(int from, int to, int d) {
+        double cost = 0.0;
+        for(int n = from; n != to; ) {
+            int next = graph.getNeighbor(n, d);
+            cost += graph.getCost(n, next, d);
+            n = next;
+        }
+        return cost;
+    }
+
+    /**
+     * Gives the direction of a jump from a vertex to another (both vertices must be on the same line, column or diagonal).
+     *
+     * @param from the vertex the jump starts from
+     * @param to the vertex the jump ends at
+     * @return the direction of the jump
+     */
+    private int directionFrom(int from, int to) {
+        int columns = graph.getColumns();
+        return graph.getDirection(Integer.signum(to / columns - from / columns), Integer.signum(to % columns - from % columns));
+    }
+
+    /**
+     * Reconstructs the shortest path from the start to the end vertex, adding every vertex between two jump points
+     * (on both sides of the elbow of the path, if it turns).
+     *
+     * @param start the starting vertex
+     * @param end the ending vertex
+     * @param context the context of the search
+     * @param verbose whether logs should be output
+     */
+    @Override
+    protected void retrievePath(int start, int end, SearchContext context, boolean verbose) {
+        if(verbose) System.out.println("\n\nfinal path (from the end to the beginning):");
+        List<WeightedGraph.Vertex> path = context.getPath();
+        int[] elbows = this.elbows.get();
+        int s = end;
+        while(s != start) {
+            int jumpPoint = context.getPrevious(s);
+            s = walk(walk(s, elbows[s], path, verbose), jumpPoint, path, verbose);
+        }
+        path.add(graph.getVertex(start));
+    }
+
+    /**
+     * Adds the vertices of a jump to the path, from its last vertex (included) to its first one (excluded).
+     *
+     * @param from the last vertex of the jump
+     * @param to the first vertex of the jump
+     * @param path the path
+     * @param verbose whether logs should be output
+     * @return the first vertex of the jump
+     */
+    private int walk(int from, int to, List<WeightedGraph.Vertex> path, boolean verbose) {
+        if(from == to) return to;
+        int d = directionFrom(from, to);
+        for(int s = from; s != to; ) {
+            int next = graph.getNeighbor(s, d);
+            WeightedGraph.Vertex v = graph.getVertex(s);
+            v.setPrevious(graph.getVertex(next));
+            if(verbose) System.out.println(v);
+            path.add(v);
+            s = next;
+        }
+        return to;
+    }
+}
@@ -0,0 +1,143 @@
+package main.instances;
+
+import main.model.WeightedGraph;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The ALT heuristic (A*, Landmarks and Triangle inequality), which takes the weights of the graph into account.
+ * <p>
+ * A few vertices, the <i>landmarks</i>, are chosen, and the cost of the shortest path from each landmark to every vertex
+ * is computed once. As edges are symmetric, the triangle inequality gives, for each landmark {@code L},
+ * {@code d(v, end) >= |d(L, end) - d(L, v)|}: the heuristic is the largest of these lower bounds.
+ * It is admissible and consistent, like the geometric heuristics, but it also knows about expensive regions
+ * (such as walls) that the shortest path has to go around.
+ * <p>
+ * Landmarks are chosen with the <i>farthest</i> strategy: each landmark is the vertex farthest (in moves)
+ * from the landmarks already chosen, which spreads them on the borders of the map. The distance tables
+ * are then computed by one Dijkstra search per landmark, run in parallel, and stored as {@code float}s.
+ */
+public class LandmarkHeuristic implements Heuristic {
+    /**
+     * The default number of landmarks.
+     */
+    public static final int DEFAULT_LANDMARKS = 8;
+    private static final double ROUNDING = 1e-6; //relative error allowed for the float tables, so the bound stays admissible
+
+    private final int columns;
+    private final int[] landmarks;
+    private final float[][] distances;
+
+    /**
+     * Constructs a {@link LandmarkHeuristic} for the specified graph, choosing the landmarks and computing their distance tables.
+     *
+     * @param graph the {@link WeightedGraph} the heuristic is used on
+     * @param count the number of landmarks (at most the number of vertices of the graph)
+     */
+    public LandmarkHeuristic(WeightedGraph graph, int count) {
+        this.columns = graph.getColumns();
+        this.landmarks = chooseLandmarks(graph, Math.min(count, graph.size()));
+        this.distances = new float[landmarks.length][];
+        IntStream.range(0, landmarks.length).parallel().forEach(i -> distances[i] = computeDistances(graph, landmarks[i]));
+    }
+
+    /**
+     * Chooses the landmarks with the farthest strategy, using the number of moves between two vertices
+     * (Chebyshev distance on 8-connected graphs, Manhattan distance on 4-connected graphs).
+     *
+     * @param graph the graph
+     * @param count the number of landmarks
+     * @return the landmarks
+     */
+    private static int[] chooseLandmarks(WeightedGraph graph, int count) {
+        final int lines = graph.getLines();
+        final int columns = graph.getColumns();
+        int[] landmarks = new int[count];
+        int[] moves = new int[graph.size()]; //moves from the closest landmark (the center of the map before the first one)
+        int previous = (lines/2) * columns + columns/2;
+        Arrays.fill(moves, Integer.MAX_VALUE);
+        for(int i = 0; i < count; i++) {
+            int py = previous / columns;
+            int px = previous % columns;
+            int farthest = 0;
+            for(int n = 0; n < moves.length; n++) {
+                int dy = Math.abs(n / columns - py);
+                int dx = Math.abs(n % columns - px);
+                moves[n] = Math.min(moves[n], graph.isDiagonal() ? Math.max(dx, dy) : dx + dy);
+                if(moves[n] > moves[farthest]) farthest = n;
+            }
+            if(i == 0) Arrays.fill(moves, Integer.MAX_VALUE); //the center is not a landmark
+            landmarks[i] = farthest;
+            moves[farthest] = 0;
+            previous = farthest;
+        }
+        return landmarks;
+    }
+
+    /**
+     * Runs a Dijkstra search over the whole graph from a landmark.
+     *
+     * @param graph the graph
+     * @param landmark the vertex to search from
+     * @return the cost of the shortest path from {@code landmark} to each vertex
+     */
+    private static float[] computeDistances(WeightedGraph graph, int landmark) {
+        double[] timeFromSource = new double[graph.size()];
+        Arrays.fill(timeFromSource, Double.POSITIVE_INFINITY);
+        IndexedMinHeap queue = new IndexedMinHeap(graph.size());
+        timeFromSource[landmark] = 0.0;
+        queue.push(landmark, 0.0);
+        while(!queue.isEmpty()) {
+            int u = queue.poll();
+            for(int d = 0; d < graph.getDirections(); d++) {
+                int neighbor = graph.getNeighbor(u, d);
+                if(neighbor < 0) continue;
+                double tentative = timeFromSource[u] + graph.getCost(u, neighbor, d);
+                if(tentative < timeFromSource[neighbor]) {
+                    timeFromSource[neighbor] = tentative;
+                    queue.push(neighbor, tentative);
+                }
+            }
+        }
+
+        float[] distances = new float[graph.size()];
+        for(int n = 0; n < distances.length; n++) distances[n] = (float) timeFromSource[n];
+        return distances;
+    }
+
+    /**
+     * @return the landmarks chosen for the graph
+     */
+    public int[] getLandmarks() {
+        return landmarks.clone();
+    }
+
+    /**
+     * Calculates the largest lower bound given by the landmarks on the cost of the shortest path between two vertices.
+     *
+     * @param vx the x-coordinate of the current point
+     * @param vy the y-coordinate of the current point
+     * @param ex the x-coordinate of the target point (end point)
+     * @param ey the y-coordinate of the target point (end point)
+     * @return the heuristic cost estimate between the current point and the target point
+     */
+    @Override
+    public double h(int vx, int vy, int ex, int ey) {
+        int v = vy*columns + vx;
+        int e = ey*columns + ex;
+        double best = 0.0;
+        for(float[] table : distances) {
+            double toV = table[v];
+            double toE = table[e];
+            double bound = Math.abs(toE - toV) - ROUNDING*Math.max(toE, toV);
+            if(bound > best) best = bound;
+        }
+        return best;
+    }
+
+    @Override
+    public String toString() {
+        return "alt";
+    }
+}
@@ -1,19 +1,28 @@
 package main.instances;
 
+import main.model.ConnectedComponents;
 import main.model.WeightedGraph;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 
 /**
  * An abstract base class for shortest path algorithms on a weighted graph.
- * Provides functionality to store delays, track paths, and retrieve the shortest path.
+ * Provides functionality to trace searches (see {@link SearchTrace}), track paths, and retrieve the shortest path.
+ * <p>
+ * The graph is only read: the state of a search is kept in a {@link SearchContext} owned by the calling thread,
+ * so several threads can search paths at once with the same instance (each thread then retrieves its own trace and path).
+ * A search runs either in the dense context of the thread ({@link #newSearch()}) or in its sparse context
+ * ({@link #newSparseSearch()}); each context is only allocated by the first search using it.
  */
 public abstract class PathFinderInstance {
     protected final WeightedGraph graph;
-    protected final HashMap<Integer, WeightedGraph.Vertex> delays;
-    protected final List<WeightedGraph.Vertex> path;
+    private final ThreadLocal<SearchContext> contexts;
+    private final ThreadLocal<SearchContext> sparseContexts;
+    private final ThreadLocal<SearchContext> lastContexts;
+    private final ThreadLocal<SearchBudget> budgets;
+    private volatile ConnectedComponents components;
+    private volatile int tracePeriod = 1;
+    private volatile TraceFile.Writer traceOutput;
 
     /**
      * Constructs a {@link PathFinderInstance} for the specified graph.
@@ -22,22 +31,97 @@ public abstract class PathFinderInstance {
      */
     protected PathFinderInstance(WeightedGraph graph) {
         this.graph = graph;
-        this.delays = new HashMap<>();
-        this.path = new ArrayList<>();
+        this.contexts = ThreadLocal.withInitial(() -> new SearchContext(graph.size()));
+        this.sparseContexts = ThreadLocal.withInitial(() -> new SparseSearchContext(graph.size()));
+        this.lastContexts = new ThreadLocal<>();
+        this.budgets = new ThreadLocal<>();
     }
 
     /**
-     * @return the mapping of step indices to vertices processed during the algorithm
+     * Sets the connected components used to reject the searches between two components at once
+     * (see {@link #searchPath(WeightedGraph.Vertex, WeightedGraph.Vertex, SearchBudget, boolean)}).
+     *
+     * @param components the {@link ConnectedComponents} of the graph, or {@code null} to search every path
      */
-    public HashMap<Integer, WeightedGraph.Vertex> getDelays() {
-        return delays;
+    public void setConnectedComponents(ConnectedComponents components) {
+        this.components = components;
     }
 
     /**
-     * @return the shortest path as a list of vertices, determined after the search
+     * Sets the period of the traces of the next searches: every step is kept with {@code 1} (the default),
+     * one step out of {@code period} otherwise, and none with {@code 0}.
+     *
+     * @param period keep one step out of {@code period}, or {@code 0} to keep no step
+     * @throws IllegalArgumentException if {@code period} is negative
+     */
+    public void setTracePeriod(int period) {
+        if(period < 0) throw new IllegalArgumentException("Invalid trace period : " + period);
+        this.tracePeriod = period;
+    }
+
+    /**
+     * Sets the trace file every step of the next searches is written to, while they run (whatever the period of their traces).
+     * The steps of searches running at once on several threads would be mixed up: only one search must run while it is set.
+     *
+     * @param output the writer of the trace file, or {@code null} to write no file
+     */
+    public void setTraceOutput(TraceFile.Writer output) {
+        this.traceOutput = output;
+    }
+
+    /**
+     * @return the trace of the vertices selected by the last search of the calling thread
+     */
+    public SearchTrace getTrace() {
+        return current().getTrace();
+    }
+
+    /**
+     * @return the shortest path as a list of vertices, determined after the last search of the calling thread
      */
     public List<WeightedGraph.Vertex> getPath() {
-        return path;
+        return current().getPath();
+    }
+
+    /**
+     * @return the context of the last search of the calling thread (its dense context if it has not searched yet)
+     */
+    private SearchContext current() {
+        SearchContext context = lastContexts.get();
+        return context != null ? context : contexts.get();
+    }
+
+    /**
+     * Starts a new search in the context of the calling thread.
+     *
+     * @return the (reset) context of the calling thread
+     */
+    protected SearchContext newSearch() {
+        return start(contexts.get());
+    }
+
+    /**
+     * Starts a new search in the sparse context of the calling thread (see {@link SparseSearchContext}).
+     *
+     * @return the (reset) sparse context of the calling thread
+     */
+    protected SearchContext newSparseSearch() {
+        return start(sparseContexts.get());
+    }
+
+    /**
+     * Starts a new search in a context of the calling thread, with the budget of the calling thread.
+     *
+     * @param context the context
+     * @return the reset {@code context}
+     */
+    private SearchContext start(SearchContext context) {
+        lastContexts.set(context);
+        context.setBudget(budgets.get());
+        context.setTracePeriod(tracePeriod);
+        context.setTraceOutput(traceOutput);
+        context.reset();
+        return context;
     }
 
     /**
@@ -45,17 +129,34 @@ public abstract class PathFinderInstance {
      *
      * @param start the starting vertex
      * @param end the ending vertex
+     * @param context the context of the search
      * @param verbose whether logs should be output
      */
-    protected void retrievePath(WeightedGraph.Vertex start, WeightedGraph.Vertex end, boolean verbose) {
+    protected void retrievePath(int start, int end, SearchContext context, boolean verbose) {
         if(verbose) System.out.println("\n\nfinal path (from the end to the beginning):");
-        WeightedGraph.Vertex s = end;
+        List<WeightedGraph.Vertex> path = context.getPath();
+        int s = end;
         while(s != start) {
-            if(verbose) System.out.println(s);
-            path.add(s);
-            s = s.getPrevious();
+            WeightedGraph.Vertex v = snapshot(s, context);
+            if(verbose) System.out.println(v);
+            path.add(v);
+            s = context.getPrevious(s);
         }
-        path.add(start);
+        path.add(graph.getVertex(start));
+    }
+
+    /**
+     * Creates a {@link WeightedGraph.Vertex} for the vertex {@code n}, carrying its current preceding vertex.
+     *
+     * @param n the vertex
+     * @param context the context of the search
+     * @return a snapshot of the vertex {@code n}
+     */
+    protected WeightedGraph.Vertex snapshot(int n, SearchContext context) {
+        WeightedGraph.Vertex v = graph.getVertex(n);
+        int previous = context.getPrevious(n);
+        if(previous >= 0) v.setPrevious(graph.getVertex(previous));
+        return v;
     }
 
     /**
@@ -67,4 +168,99 @@ public abstract class PathFinderInstance {
      * @return the total cost of the shortest path
      */
     public abstract double searchPath(WeightedGraph.Vertex start, WeightedGraph.Vertex end, boolean verbose);
+
+    /**
+     * @return whether the searches of this instance check {@link SearchContext#isOverBudget()}, and can thus be given
+     * a budget (see {@link #searchPath(WeightedGraph.Vertex, WeightedGraph.Vertex, SearchBudget, boolean)})
+     */
+    public boolean supportsBudget() {
+        return true;
+    }
+
+    /**
+     * Searches for the shortest path between the start and end vertices, within a budget.
+     * <p>
+     * Only the instances supporting budgets (see {@link #supportsBudget()}) can be given one, so that a budget is never ignored.
+     * If the budget is spent first, the path returned leads from the start vertex to the vertex selected by the search
+     * that is the closest to the end vertex in moves (the one with the smallest time from source among the closest),
+     * unless the search has already found a path to the end vertex (see {@link AnytimeAStarInstance}), which is then returned.
+     * If connected components have been set (see {@link #setConnectedComponents(ConnectedComponents)}),
+     * a search between two components (or from or to a wall) is {@link SearchResult.Status#UNREACHABLE} without any search.
+     *
+     * @param start the starting vertex
+     * @param end the ending vertex
+     * @param budget the budget of the search
+     * @param verbose whether logs should be output
+     * @return the {@link SearchResult} of the search
+     * @throws IllegalArgumentException if this instance does not support budgets
+     */
+    public SearchResult searchPath(WeightedGraph.Vertex start, WeightedGraph.Vertex end, SearchBudget budget, boolean verbose) {
+        if(!supportsBudget())
+            throw new IllegalArgumentException("Unsupported search budget : " + getClass().getSimpleName() + " cannot be stopped");
+        ConnectedComponents regions = components;
+        if(regions != null && !regions.isConnected(start.getN(), end.getN())) {
+            newSearch(); //clears the trace and path of the last search
+            if(verbose) System.out.println("no path found: the start and end vertices are in different components");
+            return new SearchResult(SearchResult.Status.UNREACHABLE, Double.POSITIVE_INFINITY, List.of());
+        }
+        budgets.set(budget);
+        try {
+            double cost = searchPath(start, end, verbose);
+            SearchContext context = current();
+            SearchResult.Status stop = context.getStop();
+            if(stop == SearchResult.Status.CANCELLED) return new SearchResult(stop, Double.POSITIVE_INFINITY, List.of());
+            if(cost != Double.POSITIVE_INFINITY) return new SearchResult(SearchResult.Status.FOUND, cost, List.copyOf(context.getPath()));
+            if(stop == null) return new SearchResult(SearchResult.Status.UNREACHABLE, cost, List.of());
+
+            int best = mostPromising(start.getN(), end.getN(), context);
+            if(verbose) System.out.println("search budget spent: partial path to " + graph.getVertex(best));
+            context.getPath().clear();
+            retrievePath(start.getN(), best, context, verbose);
+            return new SearchResult(stop, cost(context.getPath()), List.copyOf(context.getPath()));
+        } finally {
+            budgets.remove();
+            current().setBudget(null);
+        }
+    }
+
+    /**
+     * @param path a path, from the end to the beginning
+     * @return the total cost of the path, summed from the beginning (the time from source of its last vertex may be
+     * outdated if a search has found a shorter path to one of its vertices after selecting it)
+     */
+    private double cost(List<WeightedGraph.Vertex> path) {
+        final int columns = graph.getColumns();
+        double cost = 0.0;
+        for(int k = path.size() - 1; k > 0; k--) {
+            int from = path.get(k).getN();
+            int to = path.get(k - 1).getN();
+            cost += graph.getCost(from, to, graph.getDirection(to / columns - from / columns, to % columns - from % columns));
+        }
+        return cost;
+    }
+
+    /**
+     * Finds the vertex selected by the search that is the closest to the end vertex, in moves
+     * (Chebyshev distance on 8-connected graphs, Manhattan distance on 4-connected graphs).
+     *
+     * @param start the starting vertex
+     * @param end the ending vertex
+     * @param context the context of the search
+     * @return the closest vertex (among them, the one with the smallest time from source), or {@code start} if none has been selected
+     */
+    private int mostPromising(int start, int end, SearchContext context) {
+        final int columns = graph.getColumns();
+        int[] best = {start};
+        long[] bestMoves = {Long.MAX_VALUE};
+        context.forEachClosed(n -> {
+            int dy = Math.abs(n / columns - end / columns);
+            int dx = Math.abs(n % columns - end % columns);
+            long moves = graph.isDiagonal() ? Math.max(dx, dy) : dx + dy;
+            if(moves < bestMoves[0] || (moves == bestMoves[0] && context.getTimeFromSource(n) < context.getTimeFromSource(best[0]))) {
+                best[0] = n;
+                bestMoves[0] = moves;
+            }
+        });
+        return best[0];
+    }
 }
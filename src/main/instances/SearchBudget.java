@@ -0,0 +1,73 @@
+package main.instances;
+
+import main.model.WeightedGraph;
+
+/**
+ * The budget of a search: a deadline, a maximum number of expansions (vertices selected), and a cancellation flag.
+ * <p>
+ * A search given a budget (see {@link PathFinderInstance#searchPath(WeightedGraph.Vertex, WeightedGraph.Vertex, SearchBudget, boolean)})
+ * stops as soon as one of them is reached, and returns the best it has found so far (see {@link SearchResult}).
+ * The number of expansions is checked at each expansion, while the clock and the cancellation flag
+ * are only read every {@link #CHECK_PERIOD} expansions, which keeps the check cheap in the loop of the search.
+ * A budget can be cancelled from any thread.
+ */
+public class SearchBudget {
+    /**
+     * The number of expansions between two readings of the clock and of the cancellation flag.
+     */
+    public static final int CHECK_PERIOD = 64;
+
+    private final long deadline;
+    private final long maxExpansions;
+    private volatile boolean cancelled;
+
+    /**
+     * Constructs a {@link SearchBudget} with the specified timeout and maximum number of expansions.
+     *
+     * @param timeout the time left to the search from now, in milliseconds, or {@link Long#MAX_VALUE} for no deadline
+     * @param maxExpansions the maximum number of vertices the search may select, or {@link Long#MAX_VALUE} for no limit
+     * @throws IllegalArgumentException if the timeout or the maximum number of expansions is negative
+     */
+    public SearchBudget(long timeout, long maxExpansions) {
+        if(timeout < 0) throw new IllegalArgumentException("Invalid timeout : " + timeout);
+        if(maxExpansions < 0) throw new IllegalArgumentException("Invalid maximum number of expansions : " + maxExpansions);
+        long now = System.nanoTime();
+        this.deadline = timeout >= (Long.MAX_VALUE - now) / 1_000_000L ? Long.MAX_VALUE : now + timeout * 1_000_000L;
+        this.maxExpansions = maxExpansions;
+    }
+
+    /**
+     * @return a budget without deadline nor limit of expansions (it can still be cancelled)
+     */
+    public static SearchBudget unlimited() {
+        return new SearchBudget(Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Cancels the searches using this budget: they stop at their next check.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return whether this budget has been cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return whether the deadline of this budget has passed
+     */
+    public boolean isExpired() {
+        return deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0;
+    }
+
+    /**
+     * @return the maximum number of vertices a search may select
+     */
+    public long getMaxExpansions() {
+        return maxExpansions;
+    }
+}
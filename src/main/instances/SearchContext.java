@@ -0,0 +1,305 @@
+package main.instances;
+
+import main.model.WeightedGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * The state of one search on a {@link WeightedGraph}: time from source, f-score, previous vertex and closed flag
+ * of each vertex, the priority queue of the search, as well as the trace of the search (see {@link SearchTrace})
+ * and the path found.
+ * <p>
+ * The state is stored in primitive arrays indexed by vertex and stamped with a generation number:
+ * a vertex whose stamp is not the current generation has not been touched by the current search,
+ * and has default values (infinite time from source and f-score, no previous vertex, not closed).
+ * {@link #reset()} is therefore O(1) (plus the size of the previous path),
+ * and only the vertices touched by a search are re-initialised.
+ * <p>
+ * A context is not thread-safe: each thread running a search must use its own context
+ * (see {@link PathFinderInstance}), while the graph itself is only read.
+ * <p>
+ * The arrays take O(size of the graph) memory, even if a search only touches a few vertices:
+ * {@link SparseSearchContext} keeps the same state in hash tables instead.
+ * <p>
+ * A context can also hold the {@link SearchBudget} of its searches: searches supporting budgets
+ * call {@link #isOverBudget()} before each expansion, and stop as soon as it returns {@code true}.
+ */
+public class SearchContext {
+    private final double[] timeFromSource;
+    private final double[] f;
+    private final int[] previous;
+    private final boolean[] closed;
+    private final int[] stamps;
+    private final int size;
+    private int generation;
+    private final SearchTrace trace;
+    private int tracePeriod;
+    private final List<WeightedGraph.Vertex> path;
+    private IndexedMinHeap queue;
+    private SearchBudget budget;
+    private long expansions;
+    private SearchResult.Status stop;
+
+    /**
+     * Constructs a {@link SearchContext} for a graph of the specified size.
+     *
+     * @param size the number of vertices of the graph
+     */
+    public SearchContext(int size) {
+        this(size, true);
+    }
+
+    /**
+     * Constructs a {@link SearchContext} for a graph of the specified size, with or without its arrays.
+     *
+     * @param size the number of vertices of the graph
+     * @param dense whether the arrays indexed by vertex should be allocated (subclasses storing the state
+     *              of the vertices elsewhere override every method using them)
+     */
+    protected SearchContext(int size, boolean dense) {
+        this.size = size;
+        this.timeFromSource = dense ? new double[size] : null;
+        this.f = dense ? new double[size] : null;
+        this.previous = dense ? new int[size] : null;
+        this.closed = dense ? new boolean[size] : null;
+        this.stamps = dense ? new int[size] : null;
+        this.generation = 1;
+        this.trace = new SearchTrace();
+        this.tracePeriod = 1;
+        this.path = new ArrayList<>();
+    }
+
+    /**
+     * Starts a new search: every vertex goes back to its default values.
+     */
+    public void reset() {
+        resetVertices();
+        trace.reset(tracePeriod);
+        path.clear();
+        if(queue != null) queue.clear();
+        expansions = 0;
+        stop = null;
+    }
+
+    /**
+     * Gives every vertex its default values.
+     */
+    protected void resetVertices() {
+        if(generation == Integer.MAX_VALUE) { //stamps would overflow, this happens once every ~2 billion searches
+            Arrays.fill(stamps, 0);
+            generation = 0;
+        }
+        generation++;
+    }
+
+    /**
+     * Sets the budget of the next searches of this context.
+     *
+     * @param budget the budget, or {@code null} for no budget
+     */
+    public void setBudget(SearchBudget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Sets the period of the traces of the next searches of this context (see {@link SearchTrace#reset(int)}).
+     *
+     * @param period keep one step out of {@code period}, or {@code 0} to keep no step
+     */
+    public void setTracePeriod(int period) {
+        this.tracePeriod = period;
+    }
+
+    /**
+     * Sets the trace file the steps of the next searches of this context are written to (see {@link SearchTrace#setOutput(TraceFile.Writer)}).
+     *
+     * @param output the writer of the trace file, or {@code null} to write no file
+     */
+    public void setTraceOutput(TraceFile.Writer output) {
+        trace.setOutput(output);
+    }
+
+    /**
+     * Counts an expansion of the current search, and checks whether the search should stop before it.
+     * Once this returns {@code true}, it keeps returning {@code true} until the next search.
+     *
+     * @return whether the budget of the search is spent or cancelled (always {@code false} without a budget)
+     */
+    public boolean isOverBudget() {
+        if(budget == null) return false;
+        if(stop != null) return true;
+        if(expansions++ % SearchBudget.CHECK_PERIOD == 0) {
+            if(budget.isCancelled()) stop = SearchResult.Status.CANCELLED;
+            else if(budget.isExpired()) stop = SearchResult.Status.PARTIAL;
+        }
+        if(stop == null && expansions > budget.getMaxExpansions()) stop = SearchResult.Status.PARTIAL;
+        return stop != null;
+    }
+
+    /**
+     * @return {@link SearchResult.Status#PARTIAL} or {@link SearchResult.Status#CANCELLED} if the current search
+     * has been stopped by its budget, {@code null} otherwise
+     */
+    public SearchResult.Status getStop() {
+        return stop;
+    }
+
+    /**
+     * Initialises the vertex {@code n} for the current search if it has not been touched yet.
+     *
+     * @param n the vertex
+     */
+    private void touch(int n) {
+        if(stamps[n] != generation) {
+            stamps[n] = generation;
+            timeFromSource[n] = Double.POSITIVE_INFINITY;
+            f[n] = Double.POSITIVE_INFINITY;
+            previous[n] = -1;
+            closed[n] = false;
+        }
+    }
+
+    /**
+     * @param n the vertex
+     * @return whether the vertex {@code n} has been touched by the current search
+     */
+    public boolean isTouched(int n) {
+        return stamps[n] == generation;
+    }
+
+    /**
+     * @param n the vertex
+     * @return the time from the source vertex to the vertex {@code n}
+     */
+    public double getTimeFromSource(int n) {
+        return stamps[n] == generation ? timeFromSource[n] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Sets the time from the source vertex to the vertex {@code n}.
+     *
+     * @param n the vertex
+     * @param time the time to set
+     */
+    public void setTimeFromSource(int n, double time) {
+        touch(n);
+        timeFromSource[n] = time;
+    }
+
+    /**
+     * @param n the vertex
+     * @return the f-score of the vertex {@code n} (see {@link AStarInstance})
+     */
+    public double getF(int n) {
+        return stamps[n] == generation ? f[n] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Sets the f-score of the vertex {@code n}.
+     *
+     * @param n the vertex
+     * @param score the f-score to set
+     */
+    public void setF(int n, double score) {
+        touch(n);
+        f[n] = score;
+    }
+
+    /**
+     * @param n the vertex
+     * @return the vertex preceding {@code n} in the shortest path, or {@code -1} if none
+     */
+    public int getPrevious(int n) {
+        return stamps[n] == generation ? previous[n] : -1;
+    }
+
+    /**
+     * Sets the vertex preceding {@code n} in the shortest path.
+     *
+     * @param n the vertex
+     * @param p the preceding vertex to set
+     */
+    public void setPrevious(int n, int p) {
+        touch(n);
+        previous[n] = p;
+    }
+
+    /**
+     * @param n the vertex
+     * @return whether the vertex {@code n} has been closed (its time from source is final)
+     */
+    public boolean isClosed(int n) {
+        return stamps[n] == generation && closed[n];
+    }
+
+    /**
+     * Closes the vertex {@code n}.
+     *
+     * @param n the vertex
+     */
+    public void close(int n) {
+        touch(n);
+        closed[n] = true;
+    }
+
+    /**
+     * Opens the vertex {@code n} again (it is no longer closed).
+     *
+     * @param n the vertex
+     */
+    public void open(int n) {
+        touch(n);
+        closed[n] = false;
+    }
+
+    /**
+     * Performs an action for each vertex closed by the current search, by increasing vertex (this reads the state
+     * of every vertex of the graph).
+     *
+     * @param action the action
+     */
+    public void forEachClosed(IntConsumer action) {
+        for(int n = 0; n < size; n++) {
+            if(isClosed(n)) action.accept(n);
+        }
+    }
+
+    /**
+     * @return the number of vertices this context can hold
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the (empty at the start of a search) priority queue of this context
+     */
+    public IndexedMinHeap getQueue() {
+        if(queue == null) queue = newQueue();
+        return queue;
+    }
+
+    /**
+     * @return a new empty priority queue for the vertices of this context
+     */
+    protected IndexedMinHeap newQueue() {
+        return new IndexedMinHeap(size);
+    }
+
+    /**
+     * @return the trace of the vertices selected by the search
+     */
+    public SearchTrace getTrace() {
+        return trace;
+    }
+
+    /**
+     * @return the shortest path as a list of vertices, determined after the search
+     */
+    public List<WeightedGraph.Vertex> getPath() {
+        return path;
+    }
+}
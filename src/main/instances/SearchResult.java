@@ -0,0 +1,40 @@
+package main.instances;
+
+import main.model.WeightedGraph;
+
+import java.util.List;
+
+/**
+ * The result of a search with a {@link SearchBudget}.
+ *
+ * @param status how the search ended
+ * @param cost the cost of the path: of the shortest path if the status is {@link Status#FOUND},
+ *             of the partial path if it is {@link Status#PARTIAL}, {@link Double#POSITIVE_INFINITY} otherwise
+ * @param path the path, from the end to the beginning (the last vertex of a partial path is the starting vertex,
+ *             its first vertex is the most promising vertex reached), empty if there is no path
+ */
+public record SearchResult(Status status, double cost, List<WeightedGraph.Vertex> path) {
+
+    /**
+     * Enumeration of the ways a search with a budget can end.
+     */
+    public enum Status {
+        /**
+         * The end vertex has been reached: the path is the path found by the search.
+         */
+        FOUND,
+        /**
+         * The deadline or the maximum number of expansions has been reached first: the path leads to the vertex
+         * selected by the search that is the closest to the end vertex (in moves).
+         */
+        PARTIAL,
+        /**
+         * The end vertex cannot be reached from the starting vertex.
+         */
+        UNREACHABLE,
+        /**
+         * The budget has been cancelled during the search.
+         */
+        CANCELLED
+    }
+}
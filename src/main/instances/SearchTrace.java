@@ -0,0 +1,122 @@
+package main.instances;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The trace of a search: the vertices it selected, in order, each one with its previous vertex at the time
+ * it was selected (used to animate the search).
+ * <p>
+ * The steps are appended as pairs of {@code int} in chunks of {@link #CHUNK_SIZE} steps: the trace grows
+ * without copying the steps already recorded, and no object is allocated per step. The chunks are kept
+ * from one search to the next, so a context records its searches without allocating once it has grown.
+ * <p>
+ * A trace can keep only one step out of {@code period} (see {@link #reset(int)}), or none at all
+ * (period {@code 0}): recording a step then only costs a comparison.
+ * <p>
+ * A trace can also write every step to a trace file while the search runs (see {@link #setOutput(TraceFile.Writer)}),
+ * whatever its period.
+ */
+public class SearchTrace {
+    /**
+     * The number of steps of a chunk.
+     */
+    public static final int CHUNK_SIZE = 1 << 12;
+    private static final int CHUNK_SHIFT = 12;
+
+    private int[][] chunks;
+    private int size;
+    private int period;
+    private long steps;
+    private TraceFile.Writer output;
+
+    /**
+     * Constructs an empty {@link SearchTrace} keeping every step.
+     */
+    public SearchTrace() {
+        this.chunks = new int[4][];
+        this.period = 1;
+    }
+
+    /**
+     * Starts a new trace.
+     *
+     * @param period keep one step out of {@code period} (the first one, then every {@code period}-th),
+     *               or {@code 0} to keep no step
+     * @throws IllegalArgumentException if {@code period} is negative
+     */
+    public void reset(int period) {
+        if(period < 0) throw new IllegalArgumentException("Invalid trace period : " + period);
+        this.period = period;
+        this.size = 0;
+        this.steps = 0;
+    }
+
+    /**
+     * Sets the trace file the next steps are written to.
+     *
+     * @param output the writer of the trace file, or {@code null} to write no file
+     */
+    public void setOutput(TraceFile.Writer output) {
+        this.output = output;
+    }
+
+    /**
+     * Records a step of the search, if it is kept (and writes it to the trace file, if any).
+     *
+     * @param vertex the vertex selected
+     * @param previous its previous vertex, or {@code -1} if it has none
+     */
+    public void record(int vertex, int previous) {
+        if(output != null) output.write(vertex, previous);
+        if(period != 1 && (period == 0 || steps++ % period != 0)) return;
+        int chunk = size >>> CHUNK_SHIFT;
+        if(chunk == chunks.length) chunks = Arrays.copyOf(chunks, 2*chunk);
+        if(chunks[chunk] == null) chunks[chunk] = new int[2*CHUNK_SIZE];
+        int offset = (size & (CHUNK_SIZE - 1)) << 1;
+        chunks[chunk][offset] = vertex;
+        chunks[chunk][offset + 1] = previous;
+        size++;
+    }
+
+    /**
+     * @return the number of steps kept
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return whether this trace keeps steps (its period is not {@code 0})
+     */
+    public boolean isEnabled() {
+        return period != 0;
+    }
+
+    /**
+     * @return the number of steps of the search per step kept ({@code 0} if no step is kept)
+     */
+    public int getPeriod() {
+        return period;
+    }
+
+    /**
+     * @param i the index of a step kept, between 0 and {@link #size()} (excluded)
+     * @return the vertex selected at this step
+     * @throws IndexOutOfBoundsException if no step of index {@code i} has been kept
+     */
+    public int getVertex(int i) {
+        Objects.checkIndex(i, size);
+        return chunks[i >>> CHUNK_SHIFT][(i & (CHUNK_SIZE - 1)) << 1];
+    }
+
+    /**
+     * @param i the index of a step kept, between 0 and {@link #size()} (excluded)
+     * @return the previous vertex of the vertex selected at this step, or {@code -1} if it had none
+     * @throws IndexOutOfBoundsException if no step of index {@code i} has been kept
+     */
+    public int getPrevious(int i) {
+        Objects.checkIndex(i, size);
+        return chunks[i >>> CHUNK_SHIFT][((i & (CHUNK_SIZE - 1)) << 1) + 1];
+    }
+}
@@ -0,0 +1,241 @@
+package main.instances;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A {@link SearchContext} keeping the state of the vertices touched by a search in an open-addressing hash table
+ * (linear probing) of primitive arrays, instead of arrays indexed by vertex.
+ * <p>
+ * Its memory grows with the number of vertices touched by the searches, never with the size of the graph,
+ * which suits searches touching a small part of a huge map (see {@link AStarInstance}). The priority queue
+ * also keeps the positions of the vertices in this table. Each access is a hash lookup, so on small maps
+ * (or searches touching most of the map), {@link SearchContext} is faster.
+ */
+public class SparseSearchContext extends SearchContext {
+    private static final int INITIAL_CAPACITY = 1 << 10; //slots, a power of two
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+    private double[] timeFromSource;
+    private double[] f;
+    private int[] previous;
+    private boolean[] closed;
+    private int[] positions;
+    private int count;
+    private int shift;
+
+    /**
+     * Constructs a {@link SparseSearchContext} for a graph of the specified size.
+     *
+     * @param size the number of vertices of the graph
+     */
+    public SparseSearchContext(int size) {
+        super(size, false);
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Allocates empty tables.
+     *
+     * @param capacity the number of slots, a power of two
+     */
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        timeFromSource = new double[capacity];
+        f = new double[capacity];
+        previous = new int[capacity];
+        closed = new boolean[capacity];
+        positions = new int[capacity];
+        count = 0;
+        shift = Integer.numberOfLeadingZeros(capacity) + 1;
+    }
+
+    /**
+     * @return the number of vertices touched by the current search
+     */
+    public int getTouched() {
+        return count;
+    }
+
+    /**
+     * @return the number of slots of the table (twice the largest number of vertices touched, at most)
+     */
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    /**
+     * Empties the table, keeping its capacity.
+     */
+    @Override
+    protected void resetVertices() {
+        if(count > 0) Arrays.fill(keys, EMPTY);
+        count = 0;
+    }
+
+    /**
+     * @param n a vertex
+     * @return the first slot to probe for the vertex {@code n}
+     */
+    private int hash(int n) {
+        return (n * 0x9E3779B9) >>> shift;
+    }
+
+    /**
+     * @param n a vertex
+     * @return the slot of the vertex {@code n}, or {@code -1} if it has not been touched by the current search
+     */
+    private int find(int n) {
+        final int mask = keys.length - 1;
+        for(int slot = hash(n); ; slot = (slot + 1) & mask) {
+            if(keys[slot] == n) return slot;
+            if(keys[slot] == EMPTY) return -1;
+        }
+    }
+
+    /**
+     * Gives the slot of a vertex, inserting the vertex with its default values if it has not been touched yet.
+     * The table may grow, so its arrays must only be read after this call.
+     *
+     * @param n a vertex
+     * @return the slot of the vertex {@code n}
+     */
+    private int touch(int n) {
+        final int mask = keys.length - 1;
+        int slot = hash(n);
+        for(; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if(keys[slot] == n) return slot;
+        }
+        if(2*(count + 1) > keys.length) { //load factor 1/2
+            grow();
+            return touch(n);
+        }
+        keys[slot] = n;
+        timeFromSource[slot] = Double.POSITIVE_INFINITY;
+        f[slot] = Double.POSITIVE_INFINITY;
+        previous[slot] = -1;
+        closed[slot] = false;
+        positions[slot] = -1;
+        count++;
+        return slot;
+    }
+
+    /**
+     * Doubles the capacity of the table, inserting again every vertex touched.
+     */
+    private void grow() {
+        int[] oldKeys = keys;
+        double[] oldTimes = timeFromSource;
+        double[] oldF = f;
+        int[] oldPrevious = previous;
+        boolean[] oldClosed = closed;
+        int[] oldPositions = positions;
+        allocate(2*oldKeys.length);
+        final int mask = keys.length - 1;
+        for(int old = 0; old < oldKeys.length; old++) {
+            if(oldKeys[old] == EMPTY) continue;
+            int slot = hash(oldKeys[old]);
+            while(keys[slot] != EMPTY) slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[old];
+            timeFromSource[slot] = oldTimes[old];
+            f[slot] = oldF[old];
+            previous[slot] = oldPrevious[old];
+            closed[slot] = oldClosed[old];
+            positions[slot] = oldPositions[old];
+            count++;
+        }
+    }
+
+    @Override
+    public boolean isTouched(int n) {
+        return find(n) >= 0;
+    }
+
+    @Override
+    public double getTimeFromSource(int n) {
+        int slot = find(n);
+        return slot >= 0 ? timeFromSource[slot] : Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public void setTimeFromSource(int n, double time) {
+        int slot = touch(n);
+        timeFromSource[slot] = time;
+    }
+
+    @Override
+    public double getF(int n) {
+        int slot = find(n);
+        return slot >= 0 ? f[slot] : Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public void setF(int n, double score) {
+        int slot = touch(n);
+        f[slot] = score;
+    }
+
+    @Override
+    public int getPrevious(int n) {
+        int slot = find(n);
+        return slot >= 0 ? previous[slot] : -1;
+    }
+
+    @Override
+    public void setPrevious(int n, int p) {
+        int slot = touch(n);
+        previous[slot] = p;
+    }
+
+    @Override
+    public boolean isClosed(int n) {
+        int slot = find(n);
+        return slot >= 0 && closed[slot];
+    }
+
+    @Override
+    public void close(int n) {
+        int slot = touch(n);
+        closed[slot] = true;
+    }
+
+    @Override
+    public void open(int n) {
+        int slot = touch(n);
+        closed[slot] = false;
+    }
+
+    /**
+     * Performs an action for each vertex closed by the current search, in the order of the table.
+     *
+     * @param action the action
+     */
+    @Override
+    public void forEachClosed(IntConsumer action) {
+        for(int slot = 0; slot < keys.length; slot++) {
+            if(keys[slot] != EMPTY && closed[slot]) action.accept(keys[slot]);
+        }
+    }
+
+    /**
+     * @return a new empty priority queue keeping the positions of its vertices in the table of this context
+     */
+    @Override
+    protected IndexedMinHeap newQueue() {
+        return new IndexedMinHeap(INITIAL_CAPACITY, null) {
+            @Override
+            protected int position(int n) {
+                int slot = find(n);
+                return slot >= 0 ? positions[slot] : -1;
+            }
+
+            @Override
+            protected void setPosition(int n, int p) {
+                int slot = touch(n);
+                positions[slot] = p;
+            }
+        };
+    }
+}
@@ -0,0 +1,546 @@
+package main.instances;
+
+import main.model.WeightedGraph;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The file format of the traces of searches, so that a search can be replayed without reading its map or running it again.
+ * <p>
+ * A trace file holds, in this order:
+ * <ul>
+ *     <li>a header: the dimensions of the map, whether it allows diagonal moves, the algorithm and the heuristic of the search,
+ *     and its start and end vertices;</li>
+ *     <li>the cells of the map, as runs of identical cells: either the table of types of the map and the index of the type
+ *     of each run, or the color and the weight of each run (see {@link WeightedGraph});</li>
+ *     <li>the steps of the search (see {@link SearchTrace}): each one is the difference between its vertex and the vertex
+ *     of the previous step, then the difference between its previous vertex and its vertex ({@code 0} if it has none);</li>
+ *     <li>a footer: the path found and its cost, the number of steps, and the position of the footer.</li>
+ * </ul>
+ * Integers are written as variable-length integers (7 bits per byte, the smallest first), signed differences
+ * being zigzag-encoded first: the step of a search to a neighbor of the previous one usually takes 2 to 4 bytes.
+ * <p>
+ * A {@link Writer} writes the steps of a search while it runs (see {@link SearchTrace#setOutput(Writer)}),
+ * and a {@link Reader} reads them back one by one from the file mapped in memory.
+ */
+public final class TraceFile {
+    private static final int MAGIC = 0x54524331; //TRC1
+    private static final byte TYPED_CELLS = 0;
+    private static final byte COLORED_CELLS = 1;
+    private static final int FOOTER_END = 24; //cost, steps and position of the footer
+
+    private TraceFile() {}
+
+    /**
+     * Writes a trace file through a buffered {@link FileChannel}.
+     * A writer must only be fed by one search at a time.
+     */
+    public static class Writer implements Closeable {
+        private static final int BUFFER_SIZE = 1 << 16;
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final int size;
+        private int lastVertex;
+        private long steps;
+        private boolean finished;
+
+        /**
+         * Creates a trace file (or replaces it) and writes its header and the cells of the map.
+         *
+         * @param file the file to write
+         * @param graph the graph searched
+         * @param algorithm the name of the algorithm of the search
+         * @param heuristic the name of the heuristic of the search, or an empty {@link String} if it has none
+         * @param start the start vertex of the search
+         * @param end the end vertex of the search
+         * @throws IOException if an error occurs during writing
+         */
+        public Writer(File file, WeightedGraph graph, String algorithm, String heuristic, int start, int end) throws IOException {
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            this.size = graph.size();
+            try {
+                buffer.putInt(MAGIC);
+                putVarint(graph.getLines());
+                putVarint(graph.getColumns());
+                buffer.put((byte) (graph.isDiagonal() ? 1 : 0));
+                putString(algorithm);
+                putString(heuristic);
+                putVarint(start);
+                putVarint(end);
+                putCells(graph);
+            } catch(IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Writes the cells of the map as runs of identical cells.
+         *
+         * @param graph the graph searched
+         * @throws IOException if an error occurs during writing
+         */
+        private void putCells(WeightedGraph graph) throws IOException {
+            List<WeightedGraph.Type> types = graph.getTypes();
+            reserve(1);
+            buffer.put(types != null ? TYPED_CELLS : COLORED_CELLS);
+            if(types != null) {
+                putVarint(types.size());
+                for(WeightedGraph.Type type : types) {
+                    putString(type.name());
+                    putVarint(type.value());
+                    putString(type.color());
+                }
+            }
+            int n = 0;
+            while(n < size) {
+                int run = n + 1;
+                if(types != null) {
+                    while(run < size && graph.getTypeId(run) == graph.getTypeId(n)) run++;
+                    putVarint(run - n);
+                    putVarint(graph.getTypeId(n));
+                } else {
+                    while(run < size && graph.getColor(run) == graph.getColor(n) && graph.getWeight(run) == graph.getWeight(n)) run++;
+                    putVarint(run - n);
+                    reserve(4);
+                    buffer.putInt(graph.getColor(n));
+                    putVarint(graph.getWeight(n));
+                }
+                n = run;
+            }
+        }
+
+        /**
+         * Writes a step of the search.
+         *
+         * @param vertex the vertex selected
+         * @param previous its previous vertex, or {@code -1} if it has none
+         * @throws UncheckedIOException if an error occurs during writing
+         */
+        public void write(int vertex, int previous) {
+            try {
+                putVarint(zigzag(vertex - lastVertex));
+                putVarint(previous < 0 ? 0 : zigzag(previous - vertex)); //never 0 otherwise, as previous != vertex
+                lastVertex = vertex;
+                steps++;
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * @return the number of steps written
+         */
+        public long getSteps() {
+            return steps;
+        }
+
+        /**
+         * Writes the footer of the file and closes it. A file closed before being finished cannot be read.
+         *
+         * @param cost the cost of the path found
+         * @param path the path found
+         * @throws IOException if an error occurs during writing
+         */
+        public void finish(double cost, List<WeightedGraph.Vertex> path) throws IOException {
+            try {
+                long footer = channel.position() + buffer.position();
+                putVarint(path.size());
+                int last = 0;
+                for(WeightedGraph.Vertex v : path) {
+                    putVarint(zigzag(v.getN() - last));
+                    last = v.getN();
+                }
+                reserve(FOOTER_END);
+                buffer.putDouble(cost);
+                buffer.putLong(steps);
+                buffer.putLong(footer);
+                finished = true;
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * Closes the file. If {@link #finish(double, List)} has not been called, the file is left incomplete
+         * (the steps of an interrupted search are not worth replaying).
+         *
+         * @throws IOException if an error occurs during writing
+         */
+        @Override
+        public void close() throws IOException {
+            if(!channel.isOpen()) return;
+            try {
+                if(finished) flush();
+            } finally {
+                channel.close();
+            }
+        }
+
+        /**
+         * Ensures that the buffer can hold some more bytes, writing it to the file otherwise.
+         *
+         * @param bytes the number of bytes to put, at most the size of the buffer
+         * @throws IOException if an error occurs during writing
+         */
+        private void reserve(int bytes) throws IOException {
+            if(buffer.remaining() < bytes) flush();
+        }
+
+        /**
+         * Writes the buffer to the file, and empties it.
+         *
+         * @throws IOException if an error occurs during writing
+         */
+        private void flush() throws IOException {
+            buffer.flip();
+            while(buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+        }
+
+        /**
+         * Puts a variable-length integer.
+         *
+         * @param value the integer, read as unsigned
+         * @throws IOException if an error occurs during writing
+         */
+        private void putVarint(int value) throws IOException {
+            reserve(5);
+            while((value & ~0x7F) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        /**
+         * Puts a {@link String} as its length followed by its UTF-8 bytes.
+         *
+         * @param s the {@link String}
+         * @throws IOException if an error occurs during writing
+         */
+        private void putString(String s) throws IOException {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            putVarint(bytes.length);
+            for(int offset = 0; offset < bytes.length; ) {
+                reserve(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+    }
+
+    /**
+     * Reads a trace file written by a {@link Writer}: the header, the map and the footer are read at once,
+     * and the steps one by one (see {@link #nextStep()}), from windows of the file mapped in memory.
+     */
+    public static class Reader implements Closeable {
+        private static final long WINDOW_SIZE = 1 << 26; //bytes
+
+        private final FileChannel channel;
+        private final long footer;
+        private MappedByteBuffer buffer;
+        private long base;
+        private long limit;
+        private final int lines;
+        private final int columns;
+        private final String algorithm;
+        private final String heuristic;
+        private final int start;
+        private final int end;
+        private final WeightedGraph graph;
+        private final double cost;
+        private final long steps;
+        private final int[] path;
+        private long read;
+        private int vertex;
+        private int previous;
+
+        /**
+         * Opens a trace file, and reads its header, map and footer.
+         *
+         * @param file the file to read
+         * @throws IOException if an error occurs during reading
+         * @throws IllegalArgumentException if the file is not a (finished) trace file
+         */
+        public Reader(File file) throws IOException {
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            try {
+                long length = channel.size();
+                if(length < 4 + FOOTER_END) throw invalid();
+                ByteBuffer tail = ByteBuffer.allocate(FOOTER_END);
+                while(tail.hasRemaining() && channel.read(tail, length - FOOTER_END + tail.position()) >= 0);
+                tail.flip();
+                this.cost = tail.getDouble();
+                this.steps = tail.getLong();
+                this.footer = tail.getLong();
+                if(steps < 0 || footer < 4 || footer > length - FOOTER_END) throw invalid();
+
+                map(footer, length - FOOTER_END);
+                this.path = new int[getVarint()];
+                int last = 0;
+                for(int i = 0; i < path.length; i++) path[i] = last += unzigzag(getVarint());
+
+                map(0, footer);
+                if(buffer.getInt() != MAGIC) throw invalid();
+                this.lines = getVarint();
+                this.columns = getVarint();
+                if(lines <= 0 || columns <= 0 || (long) lines * columns > Integer.MAX_VALUE) throw invalid();
+                boolean diagonal = buffer.get() != 0;
+                this.algorithm = getString();
+                this.heuristic = getString();
+                this.start = getVarint();
+                this.end = getVarint();
+                this.graph = getCells(diagonal);
+                for(int n : path) check(n);
+                check(start);
+                check(this.end);
+            } catch(BufferUnderflowException e) {
+                channel.close();
+                throw invalid();
+            } catch(IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Reads the cells of the map.
+         *
+         * @param diagonal whether the map allows diagonal moves
+         * @return the graph of the map
+         */
+        private WeightedGraph getCells(boolean diagonal) throws IOException {
+            ensure(1);
+            byte mode = buffer.get();
+            if(mode != TYPED_CELLS && mode != COLORED_CELLS) throw invalid();
+            List<WeightedGraph.Type> types = null;
+            if(mode == TYPED_CELLS) {
+                int count = getVarint();
+                types = new ArrayList<>();
+                for(int t = 0; t < count; t++) types.add(new WeightedGraph.Type(getString(), getVarint(), getString()));
+            }
+            WeightedGraph graph = new WeightedGraph(lines, columns, diagonal, types);
+            for(int n = 0; n < graph.size(); ) {
+                int run = getVarint();
+                if(run <= 0 || run > graph.size() - n) throw invalid();
+                if(types != null) {
+                    int typeId = getVarint();
+                    if(typeId < 0 || typeId >= types.size()) throw invalid();
+                    for(int last = n + run; n < last; n++) graph.setVertex(n, typeId);
+                } else {
+                    ensure(4);
+                    int rgb = buffer.getInt();
+                    int weight = getVarint();
+                    for(int last = n + run; n < last; n++) graph.setVertex(n, rgb, weight);
+                }
+            }
+            graph.computeCosts();
+            return graph;
+        }
+
+        /**
+         * Reads the next step of the search (see {@link #getVertex()} and {@link #getPrevious()}).
+         *
+         * @return {@code false} if every step has been read, {@code true} otherwise
+         * @throws IOException if an error occurs during reading
+         * @throws IllegalArgumentException if the step read is invalid
+         */
+        public boolean nextStep() throws IOException {
+            if(read == steps) return false;
+            try {
+                ensure(10);
+                vertex += unzigzag(getVarint());
+                int offset = getVarint();
+                previous = offset == 0 ? -1 : vertex + unzigzag(offset);
+            } catch(BufferUnderflowException e) {
+                throw invalid();
+            }
+            check(vertex);
+            if(previous >= 0) check(previous);
+            read++;
+            return true;
+        }
+
+        /**
+         * @return the vertex selected at the current step
+         */
+        public int getVertex() {
+            return vertex;
+        }
+
+        /**
+         * @return the previous vertex of the vertex selected at the current step, or {@code -1} if it had none
+         */
+        public int getPrevious() {
+            return previous;
+        }
+
+        /**
+         * @return the graph of the map searched
+         */
+        public WeightedGraph getGraph() {
+            return graph;
+        }
+
+        /**
+         * @return the name of the algorithm of the search
+         */
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        /**
+         * @return the name of the heuristic of the search, or an empty {@link String} if it had none
+         */
+        public String getHeuristic() {
+            return heuristic;
+        }
+
+        /**
+         * @return the start vertex of the search
+         */
+        public int getStart() {
+            return start;
+        }
+
+        /**
+         * @return the end vertex of the search
+         */
+        public int getEnd() {
+            return end;
+        }
+
+        /**
+         * @return the cost of the path found
+         */
+        public double getCost() {
+            return cost;
+        }
+
+        /**
+         * @return the number of steps of the trace
+         */
+        public long getSteps() {
+            return steps;
+        }
+
+        /**
+         * @return the path found, as the vertices of the list written (see {@link PathFinderInstance#getPath()})
+         */
+        public List<WeightedGraph.Vertex> getPath() {
+            List<WeightedGraph.Vertex> vertices = new ArrayList<>(path.length);
+            for(int n : path) vertices.add(graph.getVertex(n));
+            return vertices;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        /**
+         * Maps a window of the file in memory.
+         *
+         * @param position the position of the window
+         * @param limit the end of the part of the file read, the windows must not go beyond
+         * @throws IOException if an error occurs during mapping
+         */
+        private void map(long position, long limit) throws IOException {
+            this.base = position;
+            this.limit = limit;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, limit - position));
+        }
+
+        /**
+         * Ensures that the current window holds some more bytes (unless its part of the file ends before),
+         * mapping the next window otherwise.
+         *
+         * @param bytes the number of bytes to read, at most the size of a window
+         * @throws IOException if an error occurs during mapping
+         */
+        private void ensure(int bytes) throws IOException {
+            long position = base + buffer.position();
+            if(buffer.remaining() < bytes && position + buffer.remaining() < limit) map(position, limit);
+        }
+
+        /**
+         * @return the variable-length integer read
+         * @throws IOException if an error occurs during mapping
+         */
+        private int getVarint() throws IOException {
+            ensure(5);
+            int value = 0;
+            for(int shift = 0; shift < 35; shift += 7) {
+                byte b = buffer.get();
+                value |= (b & 0x7F) << shift;
+                if(b >= 0) return value;
+            }
+            throw invalid();
+        }
+
+        /**
+         * @return the {@link String} read (its length, then its UTF-8 bytes)
+         * @throws IOException if an error occurs during mapping
+         */
+        private String getString() throws IOException {
+            int length = getVarint();
+            if(length < 0 || length > footer) throw invalid();
+            byte[] bytes = new byte[length];
+            for(int offset = 0; offset < length; ) {
+                ensure(Math.min(length - offset, (int) WINDOW_SIZE));
+                int chunk = Math.min(buffer.remaining(), length - offset);
+                if(chunk == 0) throw invalid();
+                buffer.get(bytes, offset, chunk);
+                offset += chunk;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @param n a vertex read from the file
+         * @throws IllegalArgumentException if {@code n} is not a vertex of the map
+         */
+        private void check(int n) {
+            if(n < 0 || n >= lines * columns) throw invalid();
+        }
+
+        /**
+         * @return the exception thrown when the file is not a valid trace file
+         */
+        private static IllegalArgumentException invalid() {
+            return new IllegalArgumentException("Cannot read this trace : invalid file");
+        }
+    }
+
+    /**
+     * @param value a signed integer
+     * @return {@code value} zigzag-encoded (small absolute values give small unsigned values)
+     */
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    /**
+     * @param value a zigzag-encoded integer
+     * @return the signed integer
+     */
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,45 @@
+package main.instances;
+
+import main.model.WeightedGraph;
+
+/**
+ * An implementation of weighted A*: the A* algorithm with its heuristic multiplied by a weight {@code epsilon >= 1}.
+ * <p>
+ * The search is greedier, so it selects far fewer vertices than A* on large maps. If the heuristic is admissible,
+ * the cost of the path found is at most {@code epsilon} times the cost of the shortest path.
+ * With {@code epsilon = 1}, this is {@link AStarInstance}.
+ */
+public class WeightedAStarInstance extends AStarInstance {
+    private final double epsilon;
+
+    /**
+     * Constructs a {@link WeightedAStarInstance} for the specified graph, map size, heuristic, and weight.
+     *
+     * @param graph the {@link WeightedGraph} to operate on
+     * @param mapSize the size of the map (used for heuristic calculations)
+     * @param heuristic the heuristic function for A*
+     * @param epsilon the weight of the heuristic
+     * @throws IllegalArgumentException if {@code epsilon} is less than 1
+     */
+    public WeightedAStarInstance(WeightedGraph graph, int mapSize, Heuristic heuristic, double epsilon) {
+        super(graph, mapSize, heuristic, checkEpsilon(epsilon));
+        this.epsilon = epsilon;
+    }
+
+    /**
+     * @param epsilon the weight of the heuristic
+     * @return {@code epsilon}
+     * @throws IllegalArgumentException if {@code epsilon} is less than 1
+     */
+    private static double checkEpsilon(double epsilon) {
+        if(!(epsilon >= 1.0)) throw new IllegalArgumentException("Invalid epsilon : " + epsilon + " (must be at least 1)");
+        return epsilon;
+    }
+
+    /**
+     * @return the weight of the heuristic, which bounds the suboptimality of the paths found
+     */
+    public double getEpsilon() {
+        return epsilon;
+    }
+}
@@ -0,0 +1,135 @@
+package main.model;
+
+import java.util.stream.IntStream;
+
+/**
+ * The connected components of a {@link WeightedGraph} whose heavy vertices are considered as walls.
+ * <p>
+ * Vertices whose weight is at least the wall weight belong to no component. The other vertices are labelled
+ * by their component: two of them are linked by a path avoiding walls if and only if they have the same label,
+ * so a query between two components can be rejected in O(1) (see {@link #isConnected(int, int)}).
+ * <p>
+ * Labels are computed by a union-find over the grid. The grid is cut into strips of lines, whose vertices are
+ * united in parallel (each strip only touches its own vertices), then the borders between strips are united.
+ * The root of a set is always its smallest vertex, so a single pass in the order of the vertices
+ * gives each component a label between {@code 0} and {@link #getCount()} (excluded).
+ */
+public class ConnectedComponents {
+    /**
+     * The label of walls.
+     */
+    public static final int WALL = -1;
+    private static final int STRIPS_PER_THREAD = 4;
+
+    private final int wallWeight;
+    private final int[] labels;
+    private final int count;
+
+    /**
+     * Computes the connected components of a graph.
+     *
+     * @param graph the graph
+     * @param wallWeight the weight from which a vertex is a wall, or {@link Integer#MAX_VALUE} for no wall
+     */
+    public ConnectedComponents(WeightedGraph graph, int wallWeight) {
+        final int lines = graph.getLines();
+        final int columns = graph.getColumns();
+        this.wallWeight = wallWeight;
+        int[] parents = new int[graph.size()];
+        int[] forward = graph.isDiagonal() //directions towards vertices with a larger index
+                ? new int[]{graph.getDirection(0, 1), graph.getDirection(1, -1), graph.getDirection(1, 0), graph.getDirection(1, 1)}
+                : new int[]{graph.getDirection(0, 1), graph.getDirection(1, 0)};
+
+        int strips = Math.max(1, Math.min(lines, STRIPS_PER_THREAD * Runtime.getRuntime().availableProcessors()));
+        int height = (lines + strips - 1) / strips;
+        IntStream.range(0, strips).parallel().forEach(strip -> {
+            int first = strip * height;
+            int last = Math.min(first + height, lines); //excluded
+            for(int n = first * columns; n < last * columns; n++) parents[n] = n;
+            for(int n = first * columns; n < last * columns; n++) {
+                if(graph.getWeight(n) >= wallWeight) continue;
+                for(int d : forward) {
+                    int neighbor = graph.getNeighbor(n, d);
+                    if(neighbor < 0 || neighbor >= last * columns || graph.getWeight(neighbor) >= wallWeight) continue;
+                    union(parents, n, neighbor);
+                }
+            }
+        });
+        for(int line = height - 1; line < lines - 1; line += height) { //last line of each strip, with the next strip
+            for(int n = line * columns; n < (line + 1) * columns; n++) {
+                if(graph.getWeight(n) >= wallWeight) continue;
+                for(int d : forward) {
+                    int neighbor = graph.getNeighbor(n, d);
+                    if(neighbor < (line + 1) * columns || graph.getWeight(neighbor) >= wallWeight) continue;
+                    union(parents, n, neighbor);
+                }
+            }
+        }
+
+        this.labels = new int[graph.size()];
+        int c = 0;
+        for(int n = 0; n < labels.length; n++) { //the parent of a vertex is smaller, so its label is already known
+            if(graph.getWeight(n) >= wallWeight) labels[n] = WALL;
+            else labels[n] = parents[n] == n ? c++ : labels[parents[n]];
+        }
+        this.count = c;
+    }
+
+    /**
+     * @param parents the parent of each vertex
+     * @param n a vertex
+     * @return the root of the set of {@code n}, halving the path to it
+     */
+    private static int find(int[] parents, int n) {
+        while(parents[n] != n) {
+            parents[n] = parents[parents[n]];
+            n = parents[n];
+        }
+        return n;
+    }
+
+    /**
+     * Unites the sets of two vertices: the root of the merged set is the smaller root.
+     *
+     * @param parents the parent of each vertex
+     * @param a a vertex
+     * @param b another vertex
+     */
+    private static void union(int[] parents, int a, int b) {
+        int ra = find(parents, a);
+        int rb = find(parents, b);
+        if(ra < rb) parents[rb] = ra;
+        else if(rb < ra) parents[ra] = rb;
+    }
+
+    /**
+     * @return the weight from which a vertex is a wall
+     */
+    public int getWallWeight() {
+        return wallWeight;
+    }
+
+    /**
+     * @return the number of components
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @param n a vertex
+     * @return the component of the vertex {@code n}, or {@link #WALL} if it is a wall
+     */
+    public int getComponent(int n) {
+        return labels[n];
+    }
+
+    /**
+     * @param a a vertex
+     * @param b another vertex
+     * @return whether both vertices are linked by a path avoiding walls (a wall is linked to no vertex)
+     */
+    public boolean isConnected(int a, int b) {
+        return labels[a] != WALL && labels[a] == labels[b];
+    }
+}
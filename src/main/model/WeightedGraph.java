@@ -1,27 +1,54 @@
 package main.model;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.IntStream;
 
 /**
  * Data structure for representing a weighted graph.
  * This graph is designed to support shortest-path algorithms ({@link main.instances.PathFinderInstance}).
+ * <p>
+ * The graph is a grid of {@code lines x columns} cells, where the vertex {@code n} is the cell at line {@code n / columns}
+ * and column {@code n % columns}. Cells are not stored as objects: each cell is an index into primitive arrays
+ * (its weight and its type), and adjacency is implicit (4-connected, or 8-connected if diagonals are allowed).
+ * {@link Vertex} objects are only created on demand (see {@link #getVertex(int)}).
+ * <p>
+ * The cost of the edge between two neighbors {@code u} and {@code v} is {@code (weight(u) + weight(v)) / 2},
+ * or {@code (weight(u) + weight(v)) / sqrt(2)} for diagonal neighbors. Since it only depends on the sum of the weights
+ * and on the kind of move, all costs are precomputed in a table once the vertices are set (see {@link #computeCosts()}).
  */
 public class WeightedGraph {
-    private final List<Vertex> vertices;
+    //directions (line offset, column offset), in the order neighbors were historically visited
+    private static final int[] DIAGONAL_LINES = {1, 1, 1, 0, 0, -1, -1, -1};
+    private static final int[] DIAGONAL_COLUMNS = {1, 0, -1, 1, -1, 1, -1, 0};
+    private static final int[] STRAIGHT_LINES = {1, 0, 0, -1};
+    private static final int[] STRAIGHT_COLUMNS = {0, 1, -1, 0};
+    public static final int SHORT_TYPE_IDS = Character.MAX_VALUE + 1; //up to this number of types, type ids are stored as unsigned shorts
+
+    private final int lines;
+    private final int columns;
+    private final boolean diagonal;
+    private final int[] directionLines;
+    private final int[] directionColumns;
+    private final short[] weights;
+    private final List<Type> types;
+    private final short[] typeIds; //unsigned, if there are at most SHORT_TYPE_IDS types
+    private final int[] wideTypeIds; //if there are more types
+    private final int[] colors;
+    private int maxWeight;
+    private int[] costOffsets;
+    private double[] costs;
 
     public record Type(String name, int value, String color) {}
 
     /**
-     * Represents a vertex in the graph. Each vertex has a unique identifier,
-     * a type, neighbors (both direct and diagonal), and attributes for graph traversal.
+     * Represents a vertex in the graph. Each vertex has a unique identifier and a type.
+     * Vertices are lightweight views over a cell of the graph: two vertices are equal if they have the same identifier.
+     * A vertex can also carry the vertex preceding it in a path (for example, to snapshot a search step).
      */
     public static class Vertex {
         private final int n;
         private final Type type;
-        private final List<Vertex> neighbors;
-        private final List<Vertex> diagonalNeighbors;
-        private double timeFromSource;
         private Vertex previous;
 
         /**
@@ -33,19 +60,6 @@ public class WeightedGraph {
         public Vertex(int n, Type type) {
             this.n = n;
             this.type = type;
-            this.neighbors = new ArrayList<>();
-            this.diagonalNeighbors = new ArrayList<>();
-        }
-
-        /**
-         * Adds a neighbor to this vertex.
-         *
-         * @param neighbor   the neighboring vertex to add
-         * @param isDiagonal whether the neighbor is diagonal
-         */
-        public void addNeighbor(Vertex neighbor, boolean isDiagonal) {
-            neighbors.add(neighbor);
-            if(isDiagonal) diagonalNeighbors.add(neighbor);
         }
 
         /**
@@ -62,29 +76,6 @@ public class WeightedGraph {
             return type;
         }
 
-        /**
-         * @return the time from the source vertex to this vertex
-         */
-        public double getTimeFromSource() {
-            return timeFromSource;
-        }
-
-        /**
-         * Sets the time from the source vertex to this vertex.
-         *
-         * @param timeFromSource the time to set
-         */
-        public void setTimeFromSource(double timeFromSource) {
-            this.timeFromSource = timeFromSource;
-        }
-
-        /**
-         * @return the list of direct neighbors of this vertex
-         */
-        public List<Vertex> getNeighbors() {
-            return neighbors;
-        }
-
         /**
          * @return the vertex preceding this one in the shortest path
          */
@@ -101,48 +92,354 @@ public class WeightedGraph {
             this.previous = previous;
         }
 
-        /**
-         * @return the list of diagonal neighbors of this vertex
-         */
-        public List<Vertex> getDiagonalNeighbors() { return diagonalNeighbors; }
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Vertex v && v.n == n;
+        }
+
+        @Override
+        public int hashCode() {
+            return Integer.hashCode(n);
+        }
 
         /**
          * @return a {@link String} representation of the vertex, including its identifier,
-         * type, neighbors, and previous vertex
+         * type and previous vertex
          */
         @Override
         public String toString() {
             return "{" +
                     "n=" + n +
                     ", type=" + type.name +
-                    ", neighbors=" + neighbors.stream().map(Vertex::getN).toList() +
                     ", previous=" + (previous != null ? previous.getN() : "no") +
                     '}';
         }
     }
 
     /**
-     * Constructs an empty weighted graph.
+     * Constructs a weighted grid graph whose cells are typed by a table of {@link Type}
+     * (see {@link #setVertex(int, int)}).
+     *
+     * @param lines    the number of lines of the grid
+     * @param columns  the number of columns of the grid
+     * @param diagonal whether diagonal neighbors are allowed (8-connected grid) or not (4-connected grid)
+     * @param types    the table of types of this graph (type ids take 2 bytes per vertex up to {@value #SHORT_TYPE_IDS} types,
+     *                 4 bytes beyond)
+     */
+    public WeightedGraph(int lines, int columns, boolean diagonal, List<Type> types) {
+        this.lines = lines;
+        this.columns = columns;
+        this.diagonal = diagonal;
+        this.directionLines = diagonal ? DIAGONAL_LINES : STRAIGHT_LINES;
+        this.directionColumns = diagonal ? DIAGONAL_COLUMNS : STRAIGHT_COLUMNS;
+        this.weights = new short[lines * columns];
+        this.types = types;
+        this.typeIds = types != null && types.size() <= SHORT_TYPE_IDS ? new short[lines * columns] : null;
+        this.wideTypeIds = types != null && types.size() > SHORT_TYPE_IDS ? new int[lines * columns] : null;
+        this.colors = types != null ? null : new int[lines * columns];
+    }
+
+    /**
+     * Constructs a weighted grid graph whose cells are described by a color and a weight
+     * (see {@link #setVertex(int, int, int)}).
+     *
+     * @param lines    the number of lines of the grid
+     * @param columns  the number of columns of the grid
+     * @param diagonal whether diagonal neighbors are allowed (8-connected grid) or not (4-connected grid)
+     */
+    public WeightedGraph(int lines, int columns, boolean diagonal) {
+        this(lines, columns, diagonal, null);
+    }
+
+    /**
+     * Sets the type of the vertex {@code n} from the table of types of this graph.
+     *
+     * @param n      the vertex
+     * @param typeId the index of its type in the table of types
+     */
+    public void setVertex(int n, int typeId) {
+        setTypeId(n, typeId);
+        weights[n] = checkWeight(types.get(typeId).value());
+        maxWeight = Math.max(maxWeight, weights[n]);
+    }
+
+    /**
+     * Sets the types of consecutive vertices from the table of types of this graph (see {@link #setVertex(int, int)}).
+     * Several threads can set disjoint ranges of vertices at once.
+     *
+     * @param n       the first vertex
+     * @param typeIds the indexes of their types in the table of types (as unsigned shorts)
+     * @param count   the number of vertices to set
+     */
+    public void setVertices(int n, short[] typeIds, int count) {
+        int max = 0;
+        for(int i = 0; i < count; i++) {
+            setTypeId(n + i, typeIds[i] & 0xFFFF);
+            weights[n + i] = checkWeight(types.get(typeIds[i] & 0xFFFF).value());
+            max = Math.max(max, weights[n + i]);
+        }
+        synchronized(this) {
+            maxWeight = Math.max(maxWeight, max);
+        }
+    }
+
+    /**
+     * Sets the types of consecutive vertices from the table of types of this graph (see {@link #setVertex(int, int)}),
+     * whatever the number of types.
+     * Several threads can set disjoint ranges of vertices at once.
+     *
+     * @param n       the first vertex
+     * @param typeIds the indexes of their types in the table of types
+     * @param count   the number of vertices to set
+     */
+    public void setVertices(int n, int[] typeIds, int count) {
+        int max = 0;
+        for(int i = 0; i < count; i++) {
+            setTypeId(n + i, typeIds[i]);
+            weights[n + i] = checkWeight(types.get(typeIds[i]).value());
+            max = Math.max(max, weights[n + i]);
+        }
+        synchronized(this) {
+            maxWeight = Math.max(maxWeight, max);
+        }
+    }
+
+    /**
+     * Stores the index of the type of the vertex {@code n}, as an unsigned short if the table of types is small enough.
+     *
+     * @param n      the vertex
+     * @param typeId the index of its type in the table of types
+     */
+    private void setTypeId(int n, int typeId) {
+        if(typeIds != null) typeIds[n] = (short) typeId;
+        else wideTypeIds[n] = typeId;
+    }
+
+    /**
+     * Sets the color and the weight of the vertex {@code n}.
+     *
+     * @param n     the vertex
+     * @param rgb   the RGB color of the vertex
+     * @param value the weight of the vertex
+     */
+    public void setVertex(int n, int rgb, int value) {
+        colors[n] = rgb;
+        weights[n] = checkWeight(value);
+        maxWeight = Math.max(maxWeight, weights[n]);
+    }
+
+    /**
+     * Sets the colors and the weights of consecutive vertices (see {@link #setVertex(int, int, int)}).
+     * Several threads can set disjoint ranges of vertices at once.
+     *
+     * @param n      the first vertex
+     * @param rgbs   the RGB colors of the vertices
+     * @param values the weights of the vertices
+     * @param count  the number of vertices to set
+     */
+    public void setVertices(int n, int[] rgbs, int[] values, int count) {
+        int max = 0;
+        for(int i = 0; i < count; i++) {
+            colors[n + i] = rgbs[i];
+            weights[n + i] = checkWeight(values[i]);
+            max = Math.max(max, values[i]);
+        }
+        synchronized(this) {
+            maxWeight = Math.max(maxWeight, max);
+        }
+    }
+
+    /**
+     * Ensures that a weight can be stored in this graph.
+     *
+     * @param value the weight
+     * @return the weight as a {@code short}
+     * @throws IllegalArgumentException if the weight is negative or too large
+     */
+    private static short checkWeight(int value) {
+        if(value < 0 || value > Short.MAX_VALUE)
+            throw new IllegalArgumentException("Invalid weight : " + value + " (must be between 0 and " + Short.MAX_VALUE + ")");
+        return (short) value;
+    }
+
+    /**
+     * @return the number of vertices of the graph
+     */
+    public int size() {
+        return weights.length;
+    }
+
+    /**
+     * @return the number of lines of the grid
      */
-    public WeightedGraph() {
-        this.vertices = new ArrayList<>();
+    public int getLines() {
+        return lines;
     }
 
     /**
-     * Adds a new vertex to the graph with the specified type.
+     * @return the number of columns of the grid
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return whether diagonal neighbors are allowed
+     */
+    public boolean isDiagonal() {
+        return diagonal;
+    }
+
+    /**
+     * @param n the vertex
+     * @return the weight of the vertex {@code n} (i.e. the value of its type)
+     */
+    public int getWeight(int n) {
+        return weights[n];
+    }
+
+    /**
+     * @return the largest weight of the vertices of the graph
+     */
+    public int getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * @return the table of types of this graph, or {@code null} if its cells are described by a color and a weight
+     */
+    public List<Type> getTypes() {
+        return types;
+    }
+
+    /**
+     * @param n the vertex
+     * @return the index of the type of the vertex {@code n} in the table of types (see {@link #getTypes()})
+     */
+    public int getTypeId(int n) {
+        return typeIds != null ? typeIds[n] & 0xFFFF : wideTypeIds[n];
+    }
+
+    /**
+     * @param n the vertex
+     * @return the RGB color of the vertex {@code n}, if the cells of this graph are described by a color and a weight
+     */
+    public int getColor(int n) {
+        return colors[n];
+    }
+
+    /**
+     * @param n the vertex
+     * @return the type of the vertex {@code n}
+     */
+    public Type getType(int n) {
+        if(types != null) return types.get(getTypeId(n));
+        int rgb = colors[n];
+        int red = (rgb >> 16) & 0xFF;
+        int green = (rgb >> 8) & 0xFF;
+        int blue = rgb & 0xFF;
+        return new Type("java.awt.Color[r=" + red + ",g=" + green + ",b=" + blue + "]",
+                weights[n], String.format("#%02x%02x%02x", red, green, blue));
+    }
+
+    /**
+     * Creates a {@link Vertex} view over a cell of this graph.
+     *
+     * @param n the vertex
+     * @return the vertex {@code n}
+     * @throws IndexOutOfBoundsException if {@code n} is not a vertex of this graph
+     */
+    public Vertex getVertex(int n) {
+        Objects.checkIndex(n, size());
+        return new Vertex(n, getType(n));
+    }
+
+    /**
+     * @return the number of directions a vertex can have a neighbor in (4, or 8 with diagonals)
+     */
+    public int getDirections() {
+        return directionLines.length;
+    }
+
+    /**
+     * @param direction a direction, between 0 and {@link #getDirections()} (excluded)
+     * @return whether moving in this direction is a diagonal move
+     */
+    public boolean isDiagonal(int direction) {
+        return directionLines[direction] != 0 && directionColumns[direction] != 0;
+    }
+
+    /**
+     * @param direction a direction, between 0 and {@link #getDirections()} (excluded)
+     * @return the line offset of a move in this direction ({@code -1}, {@code 0} or {@code 1})
+     */
+    public int getLineOffset(int direction) {
+        return directionLines[direction];
+    }
+
+    /**
+     * @param direction a direction, between 0 and {@link #getDirections()} (excluded)
+     * @return the column offset of a move in this direction ({@code -1}, {@code 0} or {@code 1})
+     */
+    public int getColumnOffset(int direction) {
+        return directionColumns[direction];
+    }
+
+    /**
+     * Retrieves the direction of a move by its offsets.
+     *
+     * @param lineOffset   the line offset of the move ({@code -1}, {@code 0} or {@code 1})
+     * @param columnOffset the column offset of the move ({@code -1}, {@code 0} or {@code 1})
+     * @return the direction of this move, or {@code -1} if this move is not allowed in this graph
+     */
+    public int getDirection(int lineOffset, int columnOffset) {
+        for(int d = 0; d < directionLines.length; d++) {
+            if(directionLines[d] == lineOffset && directionColumns[d] == columnOffset) return d;
+        }
+        return -1;
+    }
+
+    /**
+     * Retrieves the neighbor of a vertex in the given direction.
      *
-     * @param type the type of the new vertex
+     * @param n         the vertex
+     * @param direction a direction, between 0 and {@link #getDirections()} (excluded)
+     * @return the neighbor of {@code n} in this direction, or {@code -1} if it is outside the grid
      */
-    public void addVertex(Type type) {
-        int n = vertices.size();
-        vertices.add(new Vertex(n, type));
+    public int getNeighbor(int n, int direction) {
+        int line = n / columns + directionLines[direction];
+        int col = n % columns + directionColumns[direction];
+        if(line < 0 || line >= lines || col < 0 || col >= columns) return -1;
+        return line * columns + col;
     }
 
     /**
-     * @return a list of all vertices in the graph
+     * Precomputes the cost of every edge of the graph, indexed by the sum of the weights of its vertices and by its direction.
+     * This must be called once all vertices are set, and before any cost is retrieved (see {@link #getCost(int, int, int)}).
+     */
+    public void computeCosts() {
+        int span = 2*maxWeight + 1;
+        double[] table = new double[2*span];
+        for(int sum = 0; sum < span; sum++) {
+            table[sum] = (double)sum/2.0;
+            table[span + sum] = (double)sum/Math.sqrt(2);
+        }
+        int[] offsets = new int[getDirections()];
+        for(int d = 0; d < offsets.length; d++) offsets[d] = isDiagonal(d) ? span : 0;
+        this.costOffsets = offsets;
+        this.costs = table;
+    }
+
+    /**
+     * Retrieves the cost of moving from a vertex to its neighbor (see {@link #computeCosts()}).
+     *
+     * @param n         the vertex
+     * @param neighbor  the neighbor of {@code n} in the given direction (see {@link #getNeighbor(int, int)})
+     * @param direction a direction, between 0 and {@link #getDirections()} (excluded)
+     * @return the cost of the edge between {@code n} and {@code neighbor}
      */
-    public List<Vertex> getVertices() {
-        return vertices;
+    public double getCost(int n, int neighbor, int direction) {
+        return costs[costOffsets[direction] + weights[n] + weights[neighbor]];
     }
 
     /**
@@ -150,6 +447,6 @@ public class WeightedGraph {
      */
     @Override
     public String toString() {
-        return vertices.toString();
+        return IntStream.range(0, size()).mapToObj(this::getVertex).toList().toString();
     }
 }
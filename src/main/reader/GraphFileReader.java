@@ -3,19 +3,41 @@ package main.reader;
 import main.model.WeightedGraph;
 
 import java.io.FileNotFoundException;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Scanner;
+import java.util.NoSuchElementException;
+import java.util.stream.IntStream;
 
 /**
  * A concrete implementation of {@link GraphReader} that reads graph data from a text file.
  * This reader handles graph configuration files (see examples in `assets/examples` folder).
  * <p>
- * It uses a {@link Scanner} for reading the file line by line.
+ * The file is mapped in memory and read as bytes. The metadata and path sections are read line by line,
+ * while the {@code ==Graph==} section is cut into chunks of bytes decoded in parallel: a first pass counts the lines
+ * of the graph starting in each chunk (a line of the graph is a sequence of characters separated by whitespace),
+ * then a second pass decodes each line straight into the graph. The characters of a line are resolved through
+ * a table indexed by character (a byte, for ASCII characters), so no {@link String} is created per line.
  */
 public class GraphFileReader extends GraphReader {
-    private final Scanner scanner;
+    private static final int CHUNK_SIZE = 1 << 20; //bytes of the graph section decoded by a task
+    private static final boolean[] WHITESPACE = new boolean[256];
+    private static final short NO_TYPE = -1;
+
+    static {
+        for(int c = 0; c < 128; c++) WHITESPACE[c] = Character.isWhitespace(c);
+    }
+
+    private final FileChannel channel;
+    private long length;
+    private MappedByteBuffer window; //the part of the file read line by line
+    private long base; //the position of the window in the file
 
     /**
      * Constructs a {@link GraphFileReader} for the specified file path.
@@ -25,51 +47,36 @@ public class GraphFileReader extends GraphReader {
      */
     public GraphFileReader(String path) throws FileNotFoundException {
         super(path);
-        this.scanner = new Scanner(file);
+        this.channel = new RandomAccessFile(file, "r").getChannel();
     }
 
     /**
-     * Reads the graph from the file, initializes its vertices, neighbors, start, and end points.
+     * Reads the graph from the file, initializes its vertices, start, and end points.
+     * Graphs generated from configuration files allow diagonal neighbors (each vertex has up to 8 neighbors).
      *
+     * @throws IOException if an error occurs during reading
      * @throws IllegalArgumentException if the file is invalid or contains unexpected data
      */
     @Override
-    public void read() {
+    public void read() throws IOException {
         if(!file.exists()) throw new IllegalArgumentException("Cannot read this file : it doesn't exist");
 
-        skip(2);
-        this.lines = retrieveInt("nlines");
-        this.columns = retrieveInt("ncol");
-        skip(1);
-        Map<Character, WeightedGraph.Type> types = retrieveTypes();
-        //System.out.println(types);
-        this.weightedGraph = new WeightedGraph();
-        setVertices(types);
-        setNeighbors();
-        skip(2);
-        this.start = retrieveVertex(weightedGraph, columns, "Start");
-        this.end = retrieveVertex(weightedGraph, columns, "Finish");
-    }
-
-    /**
-     * Retrieves and sets neighbors for all vertices of this graph.
-     * Graphs generated from configuration files allow diagonal neighbors (each vertex has up to 8 neighbors).
-     */
-    private void setNeighbors() {
-        List<WeightedGraph.Vertex> vertices = weightedGraph.getVertices();
-        for(int line = 0; line < lines; line++) {
-            for(int col = 0; col < columns; col++) {
-                int current = line * columns + col;
-                WeightedGraph.Vertex v = vertices.get(current);
-                if(line < lines-1 && col < columns-1) v.addNeighbor(vertices.get((line+1)*columns+(col+1)), true);
-                if(line < lines-1) v.addNeighbor(vertices.get((line+1)*columns+(col)), false);
-                if(col > 0 && line < lines-1) v.addNeighbor(vertices.get((line+1)*columns+(col-1)), true);
-                if(col < columns-1) v.addNeighbor(vertices.get((line)*columns+(col+1)), false);
-                if(col > 0) v.addNeighbor(vertices.get((line)*columns+(col-1)), false);
-                if(line > 0 && col < columns-1) v.addNeighbor(vertices.get((line-1)*columns+(col+1)), true);
-                if(line > 0 && col > 0) v.addNeighbor(vertices.get((line-1)*columns+(col-1)), true);
-                if(line > 0) v.addNeighbor(vertices.get((line-1)*columns+(col)), false);
-            }
+        try(channel) {
+            this.length = channel.size();
+            seek(0);
+            skip(2);
+            this.lines = retrieveInt("nlines");
+            this.columns = retrieveInt("ncol");
+            skip(1);
+            List<WeightedGraph.Type> types = new ArrayList<>();
+            short[] typeIds = retrieveTypes(types);
+            //System.out.println(types);
+            this.weightedGraph = new WeightedGraph(lines, columns, true, types);
+            seek(setVertices(typeIds, base + window.position()));
+            weightedGraph.computeCosts();
+            skip(2);
+            this.start = retrieveVertex(weightedGraph, columns, "Start");
+            this.end = retrieveVertex(weightedGraph, columns, "Finish");
         }
     }
 
@@ -80,7 +87,7 @@ public class GraphFileReader extends GraphReader {
      * @return the integer specified by the line with the {@code key} keyword
      */
     private int retrieveInt(String key) {
-        String[] args = scanner.nextLine().split("=");
+        String[] args = nextLine().split("=");
         String keyFound = args[0];
         String value = args.length > 1 ? args[1] : null;
         if(!keyFound.equals(key)) throw new IllegalArgumentException("Incorrect key found : " + keyFound);
@@ -91,24 +98,28 @@ public class GraphFileReader extends GraphReader {
 
     /**
      * Retrieves the different vertex types defined in the configuration file (in the dedicated {@code =Types=} section).
-     * @return a {@link Map} containing the (ID, {@link main.model.WeightedGraph.Type}) pairs for this graph
+     * @param types the table of types of this graph, filled with the types found
+     * @return the index of the {@link main.model.WeightedGraph.Type} in {@code types} of each character (ID),
+     * or {@value #NO_TYPE} for the characters which are not the ID of a type
      */
-    private Map<Character, WeightedGraph.Type> retrieveTypes() {
-        Map<Character, WeightedGraph.Type> types = new HashMap<>();
+    private short[] retrieveTypes(List<WeightedGraph.Type> types) {
+        short[] typeIds = new short[Character.MAX_VALUE + 1];
+        Arrays.fill(typeIds, NO_TYPE);
         String line;
-        while((line = scanner.nextLine()) != null && !line.equals("==Graph==")) {
+        while((line = nextLine()) != null && !line.equals("==Graph==")) {
             String[] args = line.split("=");
             String typeName = args[0];
             String value = args.length > 1 ? args[1] : null;
             if(value == null) throw new IllegalArgumentException("No value found after " + typeName);
 
-            line = scanner.nextLine();
+            line = nextLine();
             String color = line;
 
-            types.put(typeName.charAt(0), new WeightedGraph.Type(typeName, Integer.parseInt(value), color));
+            typeIds[typeName.charAt(0)] = (short) types.size();
+            types.add(new WeightedGraph.Type(typeName, Integer.parseInt(value), color));
         }
 
-        return types;
+        return typeIds;
     }
 
     /**
@@ -119,7 +130,7 @@ public class GraphFileReader extends GraphReader {
      * @return the vertex specified by its coordinates in the configuration file and by the {@code key} keyword
      */
     private WeightedGraph.Vertex retrieveVertex(WeightedGraph G, int columns, String key) {
-        String[] args = scanner.nextLine().split("=");
+        String[] args = nextLine().split("=");
         String keyFound = args[0];
         String value = args.length > 1 ? args[1] : null;
         if(!keyFound.equals(key)) throw new IllegalArgumentException("Incorrect key found : " + keyFound);
@@ -128,29 +139,184 @@ public class GraphFileReader extends GraphReader {
         int x = Integer.parseInt(points[0]);
         int y = Integer.parseInt(points[1]);
 
-        return G.getVertices().get(x * columns + y);
+        return G.getVertex(x * columns + y);
+    }
+
+    /**
+     * Read the {@code ==Graph==} section to configure the graph and add its vertices, chunk by chunk in parallel.
+     * @param typeIds the index of the {@link main.model.WeightedGraph.Type} of each character (see {@link #retrieveTypes(List)})
+     * @param from the position of the first line of the graph in the file
+     * @return the position in the file right after the last line of the graph
+     */
+    private long setVertices(short[] typeIds, long from) {
+        int chunks = (int) Math.max(1, (length - from + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        int[] firstLines = new int[chunks + 1];
+        IntStream.range(0, chunks).parallel().forEach(chunk -> firstLines[chunk + 1] = scan(chunk, from, 0, null, null));
+        for(int chunk = 0; chunk < chunks; chunk++) firstLines[chunk + 1] += firstLines[chunk];
+        if(firstLines[chunks] < lines)
+            throw new IllegalArgumentException("Incorrect number of lines found : " + firstLines[chunks] + " (expected " + lines + ")");
+
+        long[] lastLine = {from}; //the position of the last line of the graph
+        IllegalArgumentException[] errors = new IllegalArgumentException[chunks];
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            if(firstLines[chunk] >= lines) return; //only the path section
+            try {
+                scan(chunk, from, firstLines[chunk], typeIds, lastLine);
+            } catch(IllegalArgumentException e) {
+                errors[chunk] = e;
+            }
+        });
+        for(IllegalArgumentException e : errors) {
+            if(e != null) throw e; //the error of the first line
+        }
+
+        long end = lastLine[0];
+        if(lines > 0) {
+            MappedByteBuffer buffer = map(end, Math.min(length - end, Integer.MAX_VALUE));
+            while(buffer.hasRemaining() && !WHITESPACE[buffer.get(buffer.position()) & 0xFF]) buffer.get();
+            end += buffer.position();
+        }
+        return end;
+    }
+
+    /**
+     * Scans a chunk of the {@code ==Graph==} section, counting the lines of the graph starting in it,
+     * and decodes these lines if {@code typeIds} is specified.
+     * @param chunk the index of the chunk
+     * @param from the position of the first line of the graph in the file
+     * @param firstLine the index of the first line starting in the chunk
+     * @param typeIds the index of the {@link main.model.WeightedGraph.Type} of each character, or {@code null} to only count the lines
+     * @param lastLine where the position of the last line of the graph is written, if it starts in the chunk
+     * @return the number of lines starting in the chunk
+     */
+    private int scan(int chunk, long from, int firstLine, short[] typeIds, long[] lastLine) {
+        long chunkStart = from + (long) chunk * CHUNK_SIZE;
+        long chunkEnd = Math.min(length, chunkStart + CHUNK_SIZE);
+        long mapStart = chunk == 0 ? chunkStart : chunkStart - 1; //to know whether a line starts at the first byte
+        long mapEnd = typeIds == null ? chunkEnd : Math.min(length, chunkEnd + 4L * columns + 1); //a line can end after the chunk
+        MappedByteBuffer buffer = map(mapStart, Math.min(mapEnd - mapStart, Integer.MAX_VALUE));
+        short[] ids = typeIds == null ? null : new short[columns];
+
+        int count = 0;
+        boolean separated = chunk == 0 || WHITESPACE[buffer.get(0) & 0xFF];
+        for(int p = (int) (chunkStart - mapStart), end = (int) (chunkEnd - mapStart); p < end; p++) {
+            boolean whitespace = WHITESPACE[buffer.get(p) & 0xFF];
+            if(!whitespace && separated) { //a line starts at p
+                int line = firstLine + count++;
+                if(typeIds != null && line < lines) {
+                    decodeLine(line, buffer, p, typeIds, ids);
+                    if(line == lines - 1) lastLine[0] = mapStart + p;
+                    p += Math.max(columns, 1) - 1; //at least the first columns bytes of the line are not whitespace
+                    whitespace = false;
+                }
+            }
+            separated = whitespace;
+        }
+        return count;
     }
 
     /**
-     * Read the {@code ==Graph==} section to configure the graph and add its vertices.
-     * @param types a {@link Map} containing the (ID, {@link main.model.WeightedGraph.Type}) pairs for this graph
+     * Decodes a line of the graph, and sets its vertices.
+     * @param line the index of the line
+     * @param buffer the chunk of the file holding the line
+     * @param p the position of the line in {@code buffer}
+     * @param typeIds the index of the {@link main.model.WeightedGraph.Type} of each character
+     * @param ids the buffer of the indexes of the types of the line
      */
-    private void setVertices(Map<Character, WeightedGraph.Type> types) {
-        for (int line=0; line < lines; line++) {
-            String c = scanner.next();
-            for (int col=0; col < columns; col++) {
-                weightedGraph.addVertex(types.get(c.charAt(col)));
+    private void decodeLine(int line, MappedByteBuffer buffer, int p, short[] typeIds, short[] ids) {
+        for(int col = 0; col < columns; col++) {
+            if(p + col >= buffer.limit()) throw incorrectLine(line);
+            byte c = buffer.get(p + col);
+            if(c < 0) { //not ASCII
+                decodeCharacters(line, buffer, p, typeIds, ids);
+                return;
             }
+            if(WHITESPACE[c]) throw incorrectLine(line);
+            ids[col] = typeIds[c];
+            if(ids[col] == NO_TYPE) throw new IllegalArgumentException("Unknown type found : " + (char) c);
+        }
+        weightedGraph.setVertices(line * columns, ids, columns);
+    }
+
+    /**
+     * Decodes a line of the graph holding characters which are not ASCII, and sets its vertices.
+     * @param line the index of the line
+     * @param buffer the chunk of the file holding the line
+     * @param p the position of the line in {@code buffer}
+     * @param typeIds the index of the {@link main.model.WeightedGraph.Type} of each character
+     * @param ids the buffer of the indexes of the types of the line
+     */
+    private void decodeCharacters(int line, MappedByteBuffer buffer, int p, short[] typeIds, short[] ids) {
+        int end = p;
+        while(end < buffer.limit() && !WHITESPACE[buffer.get(end) & 0xFF]) end++;
+        byte[] bytes = new byte[end - p];
+        buffer.get(p, bytes);
+        String c = new String(bytes, StandardCharsets.UTF_8);
+        if(c.length() < columns) throw incorrectLine(line);
+        for(int col = 0; col < columns; col++) {
+            ids[col] = typeIds[c.charAt(col)];
+            if(ids[col] == NO_TYPE) throw new IllegalArgumentException("Unknown type found : " + c.charAt(col));
+        }
+        weightedGraph.setVertices(line * columns, ids, columns);
+    }
+
+    /**
+     * @param line the index of a line of the graph
+     * @return the exception thrown when this line has too few vertices
+     */
+    private IllegalArgumentException incorrectLine(int line) {
+        return new IllegalArgumentException("Incorrect line found : " + line + " (expected " + columns + " vertices)");
+    }
+
+    /**
+     * Maps a part of the file in memory.
+     * @param position the position of the part
+     * @param size the size of the part, in bytes
+     * @return the part of the file mapped
+     * @throws UncheckedIOException if an error occurs during mapping
+     */
+    private MappedByteBuffer map(long position, long size) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
     /**
-     * Skip unnecessary or empty lines to the {@link Scanner}.
+     * Moves the lines read to a position of the file.
+     * @param position the position of the next line to read
+     */
+    private void seek(long position) {
+        this.base = position;
+        this.window = map(position, Math.min(length - position, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Reads the next line of the file (ended by {@code \n}, {@code \r\n} or {@code \r}).
+     * @return the line, without its line separator
+     * @throws NoSuchElementException if there is no line left
+     */
+    private String nextLine() {
+        int from = window.position();
+        int limit = window.limit();
+        if(from == limit) throw new NoSuchElementException("No line found");
+        int end = from;
+        while(end < limit && window.get(end) != '\n' && window.get(end) != '\r') end++;
+        byte[] bytes = new byte[end - from];
+        window.get(from, bytes);
+        if(end < limit && window.get(end) == '\r' && end + 1 < limit && window.get(end + 1) == '\n') end++;
+        window.position(Math.min(end + 1, limit));
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Skip unnecessary or empty lines.
      * @param lines the number of lines to skip
      */
     private void skip(int lines) {
         while(lines > 0) {
-            scanner.nextLine();
+            nextLine();
             lines--;
         }
     }
@@ -5,16 +5,118 @@ import main.model.WeightedGraph;
 import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.IntStream;
 
 /**
  * A concrete implementation of {@link GraphReader} that reads graph data from an image file.
  * This reader handles images that represent a graph (see examples in `assets/examples` folder).
  * <p>
  * It uses a {@link javax.imageio.ImageReader} for parsing image's pixels into a graph.
+ * For the usual types of images, the pixels are read straight from the {@link DataBuffer} of the image,
+ * and their weight is looked up by their largest component.
+ * <p>
+ * The image is read in parallel, strip of lines by strip of lines. The distinct colors of each strip are interned in
+ * a palette of its own, and the palettes of the strips are merged in order into the palette of the image: each color
+ * becomes one shared {@link WeightedGraph.Type}, and each vertex only stores the index of its color in the palette
+ * (on 2 bytes, or on 4 bytes for images with more than {@value WeightedGraph#SHORT_TYPE_IDS} colors).
  */
 public class GraphImageReader extends GraphReader {
+    private static final int STRIPS_PER_THREAD = 4;
+    private static final int[] WEIGHTS = new int[256]; //the weight of a pixel, by its largest component
+
+    static {
+        for(int c = 0; c < WEIGHTS.length; c++) WEIGHTS[c] = 100-(int)(Color.RGBtoHSB(c, c, c, null)[2]*100);
+    }
+
+    /**
+     * Reads the colors of a line of an image.
+     */
+    @FunctionalInterface
+    private interface LineReader {
+        /**
+         * Reads the colors of a line of the image.
+         *
+         * @param y the line
+         * @param colors the array filled with the (default sRGB) colors of the pixels of the line
+         */
+        void read(int y, int[] colors);
+    }
+
+    /**
+     * The colors of a strip of lines of an image, interned in a palette of its own.
+     *
+     * @param first the first line of the strip
+     * @param palette the palette of the strip
+     * @param typeIds the index of the color of each pixel of the strip in its palette
+     */
+    private record Strip(int first, Palette palette, int[] typeIds) {}
+
+    /**
+     * The distinct colors of an image, in order of appearance, indexed by an open addressing hash table.
+     */
+    private static final class Palette {
+        private int[] colors = new int[256];
+        private int[] slots = new int[512]; //the index + 1 of the color hashed in each slot, 0 if it is empty
+        private int size;
+
+        /**
+         * Retrieves the index of a color in the palette, adding it if needed.
+         *
+         * @param color the (default sRGB) color
+         * @return the index of {@code color}
+         */
+        private int intern(int color) {
+            int h = find(color);
+            if(slots[h] != 0) return slots[h] - 1;
+            if(size == colors.length) {
+                colors = Arrays.copyOf(colors, 2 * size);
+                slots = new int[4 * size];
+                for(int i = 0; i < size; i++) slots[find(colors[i])] = i + 1;
+                h = find(color);
+            }
+            colors[size] = color;
+            slots[h] = ++size;
+            return size - 1;
+        }
+
+        /**
+         * @param color the color
+         * @return the slot of {@code color}, or the empty slot where it should be added
+         */
+        private int find(int color) {
+            int mask = slots.length - 1;
+            int hash = color * 0x9E3779B9;
+            int h = (hash ^ (hash >>> 16)) & mask;
+            while(slots[h] != 0 && colors[slots[h] - 1] != color) h = (h + 1) & mask;
+            return h;
+        }
+
+        /**
+         * Creates the type of each color: the value property defined by HSV is normalized and inverted to give its weight
+         * (as the value of a color is its largest component divided by 255, the weight is looked up by this component).
+         *
+         * @return the {@link WeightedGraph.Type} of each color of the palette
+         */
+        private List<WeightedGraph.Type> getTypes() {
+            return IntStream.range(0, size).parallel().mapToObj(i -> {
+                int red = (colors[i] >> 16) & 0xFF;
+                int green = (colors[i] >> 8) & 0xFF;
+                int blue = colors[i] & 0xFF;
+                return new WeightedGraph.Type("java.awt.Color[r=" + red + ",g=" + green + ",b=" + blue + "]",
+                        WEIGHTS[Math.max(Math.max(red, green), blue)], "#" + Integer.toHexString(0x1000000 | colors[i] & 0xFFFFFF).substring(1));
+            }).toList();
+        }
+    }
 
     /**
      * Constructs a {@link GraphImageReader} for the specified image file path.
@@ -26,7 +128,8 @@ public class GraphImageReader extends GraphReader {
     }
 
     /**
-     * Reads the graph from the image, initializes its vertices and neighbors.
+     * Reads the graph from the image, initializes its vertices.
+     * Graphs generated from image files doesn't allow diagonal neighbors (each vertex has up to 4 neighbors).
      * By default, sets the first and last pixels as the start and end vertices
      * (but this can be modified by the user though {@link main.gui.launcher.Configuration}).
      *
@@ -40,48 +143,142 @@ public class GraphImageReader extends GraphReader {
         BufferedImage image = ImageIO.read(file);
         this.lines = image.getHeight();
         this.columns = image.getWidth();
-        this.weightedGraph = new WeightedGraph();
-        setVertices(image);
-        setNeighbors();
-        this.start = weightedGraph.getVertices().getFirst();
-        this.end = weightedGraph.getVertices().getLast();
+        LineReader reader = lineReader(image);
+        Strip[] strips = internStrips(reader);
+        Palette palette = new Palette();
+        int[][] remaps = merge(strips, palette);
+        this.weightedGraph = new WeightedGraph(lines, columns, false, palette.getTypes());
+        setTypeIds(strips, remaps);
+        weightedGraph.computeCosts();
+        this.start = weightedGraph.getVertex(0);
+        this.end = weightedGraph.getVertex(weightedGraph.size()-1);
+    }
+
+    /**
+     * @return the number of strips of lines the image is read in
+     */
+    private int stripCount() {
+        return Math.max(1, Math.min(lines, STRIPS_PER_THREAD * Runtime.getRuntime().availableProcessors()));
     }
 
     /**
-     * Decodes image pixels and converts their RGB representation to HSV.
-     * The value property defined by HSV is then normalized and inverted: the result is the vertex weight.
-     * @param image the image read by this reader
+     * Interns the colors of the pixels of the image in parallel, each strip of lines in a palette of its own.
+     * The pixels of a strip are interned line by line, so that the palettes do not depend on the number of threads.
+     * @param reader the {@link LineReader} of the image read by this reader
+     * @return the strips of the image
      */
-    private void setVertices(BufferedImage image) {
-        for (int y=0; y < lines; y++) {
-            for (int x=0; x < columns; x++) {
-                int pixel = image.getRGB(x,y);
-                Color color = new Color(pixel, true);
-                int red = color.getRed();
-                int green = color.getGreen();
-                int blue = color.getBlue();
-                int value = 100-(int)(Color.RGBtoHSB(red, green, blue, null)[2]*100);
-                weightedGraph.addVertex(new WeightedGraph.Type(
-                        color.toString(), value, String.format("#%02x%02x%02x", red, green, blue)));
+    private Strip[] internStrips(LineReader reader) {
+        int count = stripCount();
+        int height = (lines + count - 1) / count;
+        return IntStream.range(0, count).parallel().mapToObj(strip -> {
+            int first = Math.min(strip * height, lines);
+            int end = Math.min(first + height, lines);
+            Palette palette = new Palette();
+            int[] typeIds = new int[(end - first) * columns];
+            int[] colors = new int[columns];
+            for (int y = first; y < end; y++) {
+                reader.read(y, colors);
+                int last = 0, id = -1;
+                for (int x = 0; x < columns; x++) {
+                    if(id < 0 || colors[x] != last) {
+                        last = colors[x];
+                        id = palette.intern(last);
+                    }
+                    typeIds[(y - first) * columns + x] = id;
+                }
             }
+            return new Strip(first, palette, typeIds);
+        }).toArray(Strip[]::new);
+    }
+
+    /**
+     * Merges the palettes of the strips, in order, into the palette of the image: its colors are then in order of
+     * appearance in the image, whatever the number of strips.
+     * @param strips the strips of the image
+     * @param palette the palette of the image
+     * @return the index in the palette of the image of each color of the palette of each strip
+     */
+    private static int[][] merge(Strip[] strips, Palette palette) {
+        int[][] remaps = new int[strips.length][];
+        for (int s = 0; s < strips.length; s++) {
+            Palette local = strips[s].palette();
+            remaps[s] = new int[local.size];
+            for (int i = 0; i < local.size; i++) remaps[s][i] = palette.intern(local.colors[i]);
         }
+        return remaps;
     }
 
     /**
-     * Retrieves and sets neighbors for all vertices of this graph.
-     * Graphs generated from image files doesn't allow diagonal neighbors (each vertex has up to 4 neighbors).
+     * Sets the types of the vertices of the graph in parallel, strip by strip, from the palette of the image.
+     * @param strips the strips of the image
+     * @param remaps the index in the palette of the image of each color of the palette of each strip
+     */
+    private void setTypeIds(Strip[] strips, int[][] remaps) {
+        IntStream.range(0, strips.length).parallel().forEach(s -> {
+            int[] typeIds = strips[s].typeIds();
+            int[] remap = remaps[s];
+            for (int i = 0; i < typeIds.length; i++) typeIds[i] = remap[typeIds[i]];
+            weightedGraph.setVertices(strips[s].first() * columns, typeIds, typeIds.length);
+        });
+    }
+
+    /**
+     * Creates the fastest {@link LineReader} of an image: the pixels of the usual types of images decoded by {@link ImageIO}
+     * (RGB or ARGB integers, BGR or ABGR bytes, and indexed bytes) are read from its {@link DataBuffer},
+     * the others through {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)}.
+     * Both give the same colors.
+     * @param image the image
+     * @return a {@link LineReader} of {@code image}
      */
-    private void setNeighbors() {
-        List<WeightedGraph.Vertex> vertices = weightedGraph.getVertices();
-        for(int line = 0; line < lines; line++) {
-            for(int col = 0; col < columns; col++) {
-                int current = line * columns + col;
-                WeightedGraph.Vertex v = vertices.get(current);
-                if(line < lines-1) v.addNeighbor(vertices.get((line+1)*columns+(col)), false);
-                if(col < columns-1) v.addNeighbor(vertices.get((line)*columns+(col+1)), false);
-                if(col > 0) v.addNeighbor(vertices.get((line)*columns+(col-1)), false);
-                if(line > 0) v.addNeighbor(vertices.get((line-1)*columns+(col)), false);
+    private static LineReader lineReader(BufferedImage image) {
+        final int width = image.getWidth();
+        WritableRaster raster = image.getRaster();
+        if(raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0) {
+            DataBuffer buffer = raster.getDataBuffer();
+            final int offset = buffer.getOffset();
+            switch(image.getType()) {
+                case BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB -> {
+                    final int[] data = ((DataBufferInt) buffer).getData();
+                    final int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+                    final int alpha = image.getType() == BufferedImage.TYPE_INT_RGB ? 0xFF000000 : 0;
+                    return (y, colors) -> {
+                        int i = offset + y * stride;
+                        for (int x = 0; x < width; x++) colors[x] = data[i + x] | alpha;
+                    };
+                }
+                case BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR -> {
+                    final byte[] data = ((DataBufferByte) buffer).getData();
+                    ComponentSampleModel model = (ComponentSampleModel) raster.getSampleModel();
+                    final int stride = model.getScanlineStride();
+                    final int pixelStride = model.getPixelStride();
+                    final int[] bands = model.getBandOffsets(); //red, green, blue (and alpha)
+                    final int red = bands[0], green = bands[1], blue = bands[2];
+                    if(bands.length == 3) {
+                        return (y, colors) -> {
+                            for (int x = 0, i = offset + y * stride; x < width; x++, i += pixelStride)
+                                colors[x] = 0xFF000000 | (data[i + red] & 0xFF) << 16 | (data[i + green] & 0xFF) << 8 | (data[i + blue] & 0xFF);
+                        };
+                    }
+                    final int alpha = bands[3];
+                    return (y, colors) -> {
+                        for (int x = 0, i = offset + y * stride; x < width; x++, i += pixelStride)
+                            colors[x] = (data[i + alpha] & 0xFF) << 24 | (data[i + red] & 0xFF) << 16 | (data[i + green] & 0xFF) << 8 | (data[i + blue] & 0xFF);
+                    };
+                }
+                case BufferedImage.TYPE_BYTE_INDEXED -> {
+                    final byte[] data = ((DataBufferByte) buffer).getData();
+                    final int stride = ((ComponentSampleModel) raster.getSampleModel()).getScanlineStride();
+                    IndexColorModel model = (IndexColorModel) image.getColorModel();
+                    final int[] palette = new int[256];
+                    for (int p = 0; p < palette.length; p++) palette[p] = model.getRGB(p);
+                    return (y, colors) -> {
+                        int i = offset + y * stride;
+                        for (int x = 0; x < width; x++) colors[x] = palette[data[i + x] & 0xFF];
+                    };
+                }
+                default -> {}
             }
         }
+        return (y, colors) -> image.getRGB(0, y, width, 1, colors, 0, width);
     }
 }
@@ -11,6 +11,7 @@ import java.io.IOException;
  * as well as the graph's dimensions.
  * @see GraphFileReader
  * @see GraphImageReader
+ * @see GraphTraceReader
  */
 public abstract class GraphReader {
     protected final File file;
@@ -0,0 +1,53 @@
+package main.reader;
+
+import main.instances.TraceFile;
+
+import java.io.IOException;
+
+/**
+ * A concrete implementation of {@link GraphReader} that reads graph data from a trace file (see {@link TraceFile}).
+ * The map is read from the trace file itself, not from its source: a search can be replayed without its map.
+ * <p>
+ * The trace file stays open after reading, so that the steps of the search can be read one by one (see {@link #retrieveTrace()}).
+ */
+public class GraphTraceReader extends GraphReader {
+    private TraceFile.Reader trace;
+
+    /**
+     * Constructs a {@link GraphTraceReader} for the specified trace file path.
+     *
+     * @param path the path to the trace file
+     */
+    public GraphTraceReader(String path) {
+        super(path);
+    }
+
+    /**
+     * Reads the map and the start and end points of the search from the trace file.
+     *
+     * @throws IOException if an error occurs during reading
+     * @throws IllegalArgumentException if the file does not exist or is not a trace file
+     */
+    @Override
+    public void read() throws IOException {
+        if(!file.exists()) throw new IllegalArgumentException("Cannot read this trace : it doesn't exist");
+
+        this.trace = new TraceFile.Reader(file);
+        this.weightedGraph = trace.getGraph();
+        this.lines = weightedGraph.getLines();
+        this.columns = weightedGraph.getColumns();
+        this.start = weightedGraph.getVertex(trace.getStart());
+        this.end = weightedGraph.getVertex(trace.getEnd());
+    }
+
+    /**
+     * Retrieves the trace file read, positioned before the first step of the search.
+     *
+     * @return the {@link TraceFile.Reader} of the trace file
+     * @throws Exception if the file has not been read yet
+     */
+    public TraceFile.Reader retrieveTrace() throws Exception {
+        if(trace == null) throw new Exception("File should be read before retrieving the trace");
+        return trace;
+    }
+}